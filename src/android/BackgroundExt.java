@@ -29,7 +29,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.PowerManager;
-import android.view.View;
 import android.view.Window;
 
 import org.apache.cordova.CallbackContext;
@@ -42,6 +41,9 @@ import org.apache.cordova.PluginResult.Status;
 import java.lang.ref.WeakReference;
 import java.util.List;
 
+import de.appplant.cordova.plugin.background.CommandExecutor.Priority;
+import de.appplant.cordova.plugin.background.CommandProcessor.Target;
+
 import static android.content.Context.ACTIVITY_SERVICE;
 import static android.content.Context.POWER_SERVICE;
 import static android.view.WindowManager.LayoutParams.FLAG_ALLOW_LOCK_WHILE_SCREEN_ON;
@@ -57,83 +59,79 @@ class BackgroundExt {
     // Weak reference to the cordova web view passed by the plugin
     private final WeakReference<CordovaWebView> webView;
 
+    // Time the screen is kept on after a wake-up
+    private static final long WAKEUP_MILLIS = 10 * 1000;
+
     private PowerManager.WakeLock wakeLock;
 
+    // Caches the state of the screen
+    private final ScreenState screen;
+
     /**
      * Initialize the extension to perform non-background related tasks.
      *
      * @param plugin The cordova plugin.
      */
-    private BackgroundExt(CordovaPlugin plugin) {
+    BackgroundExt(CordovaPlugin plugin) {
         this.cordova = new WeakReference<CordovaInterface>(plugin.cordova);
         this.webView = new WeakReference<CordovaWebView>(plugin.webView);
-    }
-
-    /**
-     * Executes the request asynchronous.
-     *
-     * @param plugin   The cordova plugin.
-     * @param action   The action to execute.
-     * @param callback The callback context used when
-     *                 calling back into JavaScript.
-     */
-    @SuppressWarnings("UnusedParameters")
-    static void execute (CordovaPlugin plugin, final String action,
-                         final CallbackContext callback) {
-
-        final BackgroundExt ext = new BackgroundExt(plugin);
+        this.screen  = new ScreenState(plugin.cordova.getActivity());
 
-        plugin.cordova.getThreadPool().execute(new Runnable() {
-            @Override
-            public void run() {
-                ext.execute(action, callback);
-            }
-        });
+        screen.start();
     }
 
     // codebeat:disable[ABC]
 
     /**
-     * Executes the request.
+     * Register the actions of the extension. Actions which keep the app
+     * alive or bring it back to the user run ahead of the others.
      *
-     * @param action   The action to execute.
-     * @param callback The callback context used when
-     *                 calling back into JavaScript.
+     * @param processor The processor to dispatch the actions.
      */
-    private void execute (String action, CallbackContext callback) {
-
-        if (action.equalsIgnoreCase("optimizations")) {
-            disableWebViewOptimizations();
-        }
-
-        if (action.equalsIgnoreCase("background")) {
+    void registerActions(CommandProcessor processor) {
+        processor.register("background", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
             moveToBackground();
-        }
+            callback.success();
+        });
 
-        if (action.equalsIgnoreCase("foreground")) {
+        processor.register("foreground", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
             moveToForeground();
-        }
+            callback.success();
+        });
 
-        if (action.equalsIgnoreCase("tasklist")) {
+        processor.register("tasklist", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
             excludeFromTaskList();
-        }
+            callback.success();
+        });
 
-        if (action.equalsIgnoreCase("dimmed")) {
-            isDimmed(callback);
-        }
+        processor.register("dimmed", Target.INLINE, Priority.NORMAL, (args, callback) ->
+                isDimmed(callback));
+
+        processor.register("screen", Target.INLINE, Priority.NORMAL, (args, callback) ->
+                callback.success(ScreenState.toJSON()));
 
-        if (action.equalsIgnoreCase("wakeup")) {
+        processor.register("wakeup", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
             wakeup();
-        }
+            callback.success();
+        });
 
-        if (action.equalsIgnoreCase("unlock")) {
+        processor.register("unlock", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
             wakeup();
             unlock();
-        }
+            callback.success();
+        });
     }
 
     // codebeat:enable[ABC]
 
+    /**
+     * Release the resources held by the extension.
+     */
+    void onDestroy() {
+        releaseWakeLock();
+        screen.stop();
+    }
+
     /**
      * Move app to background.
      */
@@ -159,37 +157,6 @@ class BackgroundExt {
         app.startActivity(intent);
     }
 
-    /**
-     * Enable GPS position tracking while in background.
-     */
-    private void disableWebViewOptimizations() {
-        Thread thread = new Thread(){
-            public void run() {
-                try {
-                    Thread.sleep(1000);
-                    getApp().runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            View view = webView.get().getEngine().getView();
-
-                            try {
-                                Class.forName("org.crosswalk.engine.XWalkCordovaView")
-                                        .getMethod("onShow")
-                                        .invoke(view);
-                            } catch (Exception e){
-                                view.dispatchWindowVisibilityChanged(View.VISIBLE);
-                            }
-                        }
-                    });
-                } catch (InterruptedException e) {
-                    // do nothing
-                }
-            }
-        };
-
-        thread.start();
-    }
-
     /**
      * Exclude the app from the recent tasks list.
      */
@@ -222,9 +189,30 @@ class BackgroundExt {
     /**
      * If the screen is active.
      */
-    @SuppressWarnings("deprecation")
     private boolean isDimmed() {
-        PowerManager pm = (PowerManager) getService(POWER_SERVICE);
+        return isDimmed(getApp());
+    }
+
+    /**
+     * If the screen is active, read from the tracked state if available.
+     *
+     * @param context Any context of the app.
+     */
+    static boolean isDimmed(Context context) {
+        if (ScreenState.isTracked())
+            return ScreenState.isDimmed();
+
+        return queryDimmed(context);
+    }
+
+    /**
+     * If the screen is active, as reported by the power manager.
+     *
+     * @param context Any context of the app.
+     */
+    @SuppressWarnings("deprecation")
+    static boolean queryDimmed(Context context) {
+        PowerManager pm = (PowerManager) context.getSystemService(POWER_SERVICE);
 
         if (Build.VERSION.SDK_INT < 20) {
             return !pm.isScreenOn();
@@ -255,7 +243,7 @@ class BackgroundExt {
     /**
      * Acquire a wake lock to wake up the device.
      */
-    private void acquireWakeLock() {
+    private synchronized void acquireWakeLock() {
         PowerManager pm = (PowerManager) getService(POWER_SERVICE);
 
         releaseWakeLock();
@@ -268,13 +256,13 @@ class BackgroundExt {
 
         wakeLock = pm.newWakeLock(level, "etrailer:backround_ext_wakelock");
         wakeLock.setReferenceCounted(false);
-        wakeLock.acquire(24 * 60 * 60 * 1000);
+        wakeLock.acquire(WAKEUP_MILLIS);
     }
 
     /**
      * Releases the previously acquire wake lock.
      */
-    private void releaseWakeLock() {
+    private synchronized void releaseWakeLock() {
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
             wakeLock = null;
@@ -312,10 +300,7 @@ class BackgroundExt {
      * The launch intent for the main activity.
      */
     private Intent getLaunchIntent() {
-        Context app    = getApp().getApplicationContext();
-        String pkgName = app.getPackageName();
-
-        return app.getPackageManager().getLaunchIntentForPackage(pkgName);
+        return ResourceCache.getInstance(getApp()).getLaunchIntent();
     }
 
     /**
@@ -23,20 +23,28 @@ package de.appplant.cordova.plugin.background;
 
 import android.app.Activity;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.content.res.Configuration;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Base64;
 import android.util.Log;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import de.appplant.cordova.plugin.background.CommandExecutor.Priority;
+import de.appplant.cordova.plugin.background.CommandProcessor.Target;
 import de.appplant.cordova.plugin.background.ForegroundService.ForegroundBinder;
 
 import static android.content.Context.BIND_AUTO_CREATE;
@@ -45,28 +53,119 @@ public class BackgroundMode extends CordovaPlugin {
 
     private String TAG = "BackgroundMode";
 
+    // Time to wait before stopping a service not yet in foreground again
+    private static final long STOP_RETRY_DELAY = 1000;
+
     // Event types for callbacks
     private enum Event {
         ACTIVATE, DEACTIVATE, FAILURE
     }
 
-    // Plugin namespace
-    private static final String JS_NAMESPACE = "cordova.plugins.backgroundMode";
-
     // Flag indicates if the app is in background or foreground
-    private boolean inBackground = false;
+    private volatile boolean inBackground = false;
 
     // Flag indicates if the plugin is enabled or disabled
-    private boolean isDisabled = true;
+    private volatile boolean isDisabled = true;
 
     // Flag indicates if the service is bind
-    private boolean isBind = false;
+    private volatile boolean isBind = false;
+
+    // Used to delay the start of the service
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Flag indicates if the start of the service is pending
+    private boolean isStartPending = false;
+
+    // Starts the service once the app stayed long enough in background
+    private final Runnable delayedStart = new Runnable() {
+        @Override
+        public void run() {
+            isStartPending = false;
+            startService();
+        }
+    };
+
+    // Stops the service once it has been put into foreground state, retries
+    // until the system has delivered the start command
+    private final Runnable delayedStop = new Runnable() {
+        @Override
+        public void run() {
+            stopForegroundService(true);
+        }
+    };
+
+    // Stops the service once the app is idle in background
+    private final Runnable idleStop = new Runnable() {
+        @Override
+        public void run() {
+            if (!inBackground || keepAlive.isHeld())
+                return;
+
+            Log.d(TAG, "No keep-alive lease left, stopping service");
+            Metrics.increment(Metrics.IDLE_STOPS);
+            stopService();
+        }
+    };
 
     // Default settings for the notification
-    private static JSONObject defaultSettings = new JSONObject();
+    private static final AtomicReference<Settings> defaultSettings =
+            new AtomicReference<Settings>(Settings.DEFAULT);
+
+    // Flag indicates if the plugin has been loaded in this process
+    private static volatile boolean isLoaded = false;
+
+    // Flag indicates if the state is about to be persisted
+    private final AtomicBoolean isPersistPending = new AtomicBoolean(false);
 
     // Service that keeps the app awake
-    private ForegroundService service;
+    private volatile ForegroundService service;
+
+    // Runs the asynchronous actions
+    private CommandExecutor executor;
+
+    // Dispatches the actions in order
+    private CommandProcessor processor;
+
+    // Implements the actions not related to the background mode
+    private BackgroundExt ext;
+
+    // Turns the optimizations of the web view off and on
+    private WebViewOptimizations optimizations;
+
+    // Leases opened by JS to keep the service running
+    private KeepAliveLeases keepAlive;
+
+    // Scales the background work down on low battery or heat
+    private PowerPolicy power;
+
+    // Keeps the app alive by the service or by periodic wakeups
+    private KeepAliveStrategies strategies;
+
+    // Records collected in background, mapped on first use
+    private SampleBuffer samples;
+
+    // Keeps the app alive by the foreground service
+    private final KeepAliveStrategy serviceStrategy = new KeepAliveStrategy() {
+        @Override
+        public String getName() {
+            return KeepAliveStrategies.SERVICE;
+        }
+
+        @Override
+        public boolean isSupported(Context context) {
+            return true;
+        }
+
+        @Override
+        public boolean start(Context context, long interval) {
+            return startForegroundService();
+        }
+
+        @Override
+        public void stop(Context context) {
+            stopForegroundService(true);
+        }
+    };
 
     // Used to (un)bind the service to with the activity
     private final ServiceConnection connection = new ServiceConnection() {
@@ -74,66 +173,256 @@ public class BackgroundMode extends CordovaPlugin {
         public void onServiceConnected(ComponentName name, IBinder service) {
             ForegroundBinder binder = (ForegroundBinder) service;
             BackgroundMode.this.service = binder.getService();
+            TraceLog.instant(TraceLog.LIFECYCLE, "onServiceConnected", null);
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
-            fireEvent(Event.FAILURE, "'service disconnected'");
+            TraceLog.instant(TraceLog.LIFECYCLE, "onServiceDisconnected", null);
+            fireEvent(Event.FAILURE, "service disconnected");
         }
     };
 
     @Override
     protected void pluginInitialize() {
+        int poolSize = preferences.getInteger("BackgroundModePoolSize",
+                CommandExecutor.DEFAULT_POOL_SIZE);
+        int capacity = preferences.getInteger("BackgroundModeQueueSize",
+                CommandExecutor.DEFAULT_CAPACITY);
+        int priority = preferences.getInteger("BackgroundModeThreadPriority",
+                Process.THREAD_PRIORITY_DEFAULT);
+
+        int watchdog = preferences.getInteger("BackgroundModeWatchdog", 0);
+
+        NotificationPipeline.setMaxRate(preferences.getInteger(
+                "BackgroundModeNotificationRate", NotificationPipeline.DEFAULT_RATE));
+
+        if (watchdog > 0) {
+            MainThreadWatchdog.getInstance().start(watchdog);
+        }
+
+        executor  = new CommandExecutor(poolSize, capacity, priority);
+        processor = new CommandProcessor(executor, capacity);
+        ext       = new BackgroundExt(this);
+
+        optimizations = new WebViewOptimizations(cordova, webView);
+
+        keepAlive = new KeepAliveLeases(new Runnable() {
+            @Override
+            public void run() {
+                onKeepAliveChanged();
+            }
+        });
+
+        power = new PowerPolicy(cordova.getActivity(), new PowerPolicy.Listener() {
+            @Override
+            public void onTierChanged(PowerPolicy.Tier tier) {
+                applyTier(tier);
+            }
+        });
+        power.start();
+
+        strategies = new KeepAliveStrategies(cordova.getActivity(), serviceStrategy);
+        strategies.setInterval(preferences.getInteger("BackgroundModeWakeupInterval",
+                (int) KeepAliveStrategies.DEFAULT_INTERVAL));
+
+        MemoryManager memory = MemoryManager.getInstance();
+        memory.attach(cordova, webView);
+        cordova.getActivity().getApplicationContext().registerComponentCallbacks(memory);
+
+        registerActions();
+        prewarm();
+
+        isLoaded = true;
+
         BackgroundExt.addWindowFlags(cordova.getActivity());
     }
 
-    // codebeat:disable[ABC]
-
     /**
-     * Executes the request.
+     * Called when the device configuration changes.
      *
-     * @param action   The action to execute.
-     * @param args     The exec() arguments.
-     * @param callback The callback context used when calling back into JavaScript.
-     * @return Returning false results in a "MethodNotFound" error.
-     * @throws JSONException
+     * @param newConfig The new device configuration.
      */
     @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callback) throws JSONException {
-
-        if (action.equalsIgnoreCase("configure")) {
-            cordova.getThreadPool().execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        configure(args.getJSONObject(0), args.getBoolean(1));
-                    } catch (JSONException e) {
-                        callback.error("Error parsing json");
-                    }
-                }
-            });
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        ResourceCache.getInstance(cordova.getActivity()).invalidate();
+    }
+
+    // codebeat:disable[ABC]
+
+    /**
+     * Register the actions of the plugin.
+     */
+    private void registerActions() {
+        processor.register(CommandProcessor.LISTEN, Target.INLINE, Priority.CONTROL, (args, callback) ->
+                EventChannel.getInstance().register(callback));
+
+        processor.register("configure", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            configure(args.getJSONObject(0), args.getBoolean(1));
             callback.success();
-            return true;
-        }
+        });
 
-        if (action.equalsIgnoreCase("enable")) {
+        processor.register("enable", Target.MAIN, Priority.CONTROL, (args, callback) -> {
             enableMode();
             callback.success();
-            return true;
-        }
+        });
 
-        if (action.equalsIgnoreCase("disable")) {
+        processor.register("disable", Target.MAIN, Priority.CONTROL, (args, callback) -> {
             disableMode();
             callback.success();
-            return true;
-        }
+        });
 
-        BackgroundExt.execute(this, action, callback);
-        return true;
+        processor.register("progress", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
+            updateProgress(args.optInt(0), args.optInt(1), args.optBoolean(2));
+            callback.success();
+        });
+
+        processor.register("optimizations", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            optimizations.disable(args.optLong(0));
+            callback.success();
+        });
+
+        processor.register("throttle", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            optimizations.enable();
+            callback.success();
+        });
+
+        processor.register("getStats", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
+            if (args.length() > 0) {
+                Metrics.setPushInterval(args.optLong(0));
+            }
+
+            callback.success(Metrics.toJSON());
+        });
+
+        processor.register("acquire", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            getWakeLockManager().acquire(args.getString(0), args.optLong(1));
+            callback.success();
+        });
+
+        processor.register("release", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            getWakeLockManager().release(args.getString(0));
+            callback.success();
+        });
+
+        processor.register("dutycycle", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            getWakeLockManager().setDutyCycle(args.optLong(0), args.optLong(1));
+            callback.success();
+        });
+
+        processor.register("wakelocks", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(getWakeLockManager().toJSON()));
+
+        processor.register("subscribe", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            TickScheduler.subscribe(args.getString(0), args.getLong(1), args.optLong(2));
+            callback.success();
+        });
+
+        processor.register("unsubscribe", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            TickScheduler.unsubscribe(args.getString(0));
+            callback.success();
+        });
+
+        processor.register("ticks", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(TickScheduler.toJSON()));
+
+        processor.register("power", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(power.toJSON()));
+
+        processor.register("strategy", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(strategies.toJSON()));
+
+        processor.register("trace", Target.EXECUTOR, Priority.BULK, (args, callback) ->
+                callback.success(TraceLog.export(args.optLong(0))));
+
+        processor.register("watchdog", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            if (args.optBoolean(0)) {
+                MainThreadWatchdog.getInstance().start(args.optLong(1));
+            } else {
+                MainThreadWatchdog.getInstance().stop();
+            }
+
+            callback.success();
+        });
+
+        processor.register("watchdogstats", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(MainThreadWatchdog.getInstance().toJSON()));
+
+        processor.register("keepalive", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            keepAlive.acquire(args.getString(0), args.optLong(1));
+            callback.success();
+        });
+
+        processor.register("letgo", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            keepAlive.release(args.getString(0));
+            callback.success();
+        });
+
+        processor.register("keepalives", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(keepAlive.toJSON()));
+
+        processor.register("memory", Target.EXECUTOR, Priority.CONTROL, (args, callback) -> {
+            MemoryManager.getInstance().configure(args.getJSONObject(0));
+            callback.success();
+        });
+
+        processor.register("memorystats", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success(MemoryManager.getInstance().toJSON()));
+
+        processor.register("samples", Target.EXECUTOR, Priority.BULK, (args, callback) -> {
+            try {
+                SampleBuffer buffer = getSampleBuffer();
+                buffer.configure(args.optInt(0), SampleBuffer.parsePolicy(args.optString(1)));
+                callback.success(buffer.toJSON());
+            } catch (IOException e) {
+                callback.error(e.getMessage());
+            }
+        });
+
+        processor.register("append", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
+            try {
+                byte[] records = Base64.decode(args.getString(0), Base64.DEFAULT);
+                callback.success(getSampleBuffer().append(records));
+            } catch (IOException e) {
+                callback.error(e.getMessage());
+            }
+        });
+
+        processor.register("drain", Target.EXECUTOR, Priority.BULK, (args, callback) -> {
+            try {
+                callback.success(getSampleBuffer().drain());
+            } catch (IOException e) {
+                callback.error(e.getMessage());
+            }
+        });
+
+        processor.register("samplestats", Target.EXECUTOR, Priority.NORMAL, (args, callback) -> {
+            try {
+                callback.success(getSampleBuffer().toJSON());
+            } catch (IOException e) {
+                callback.error(e.getMessage());
+            }
+        });
+
+        ext.registerActions(processor);
     }
 
     // codebeat:enable[ABC]
 
+    /**
+     * Executes the request.
+     *
+     * @param action   The action to execute.
+     * @param args     The exec() arguments.
+     * @param callback The callback context used when calling back into JavaScript.
+     * @return Returning false results in a "MethodNotFound" error.
+     */
+    @Override
+    public boolean execute(String action, JSONArray args, CallbackContext callback) {
+        return processor.execute(action, args, callback);
+    }
+
     /**
      * Called when the system is about to start resuming a previous activity.
      *
@@ -142,8 +431,13 @@ public class BackgroundMode extends CordovaPlugin {
     @Override
     public void onPause(boolean multitasking) {
         super.onPause(multitasking);
+        TraceLog.instant(TraceLog.LIFECYCLE, "onPause", null);
+        Metrics.onPause();
+        optimizations.onPause();
+        MemoryManager.getInstance().onPause();
         inBackground = true;
-        startService();
+        persist();
+        scheduleStartService();
     }
 
     /**
@@ -154,18 +448,86 @@ public class BackgroundMode extends CordovaPlugin {
     @Override
     public void onResume(boolean multitasking) {
         super.onResume(multitasking);
+        TraceLog.instant(TraceLog.LIFECYCLE, "onResume", null);
+        Metrics.onResume();
+        optimizations.onResume();
+        MemoryManager.getInstance().onResume();
         inBackground = false;
+        persist();
+
+        handler.removeCallbacks(idleStop);
+
+        if (isStartPending) {
+            handler.removeCallbacks(delayedStart);
+            isStartPending = false;
+            Metrics.increment(Metrics.DEBOUNCED_TRANSITIONS);
+            return;
+        }
+
         stopService();
     }
 
+    /**
+     * Called when the page is about to navigate. Events get buffered until
+     * the new page has registered its listener.
+     */
+    @Override
+    public void onReset() {
+        EventChannel.getInstance().unregister();
+    }
+
     /**
      * Called when the activity will be destroyed.
      */
     @Override
     public void onDestroy() {
+        TraceLog.instant(TraceLog.LIFECYCLE, "onDestroy", null);
+        handler.removeCallbacks(delayedStart);
+        handler.removeCallbacks(idleStop);
         stopService();
+        ext.onDestroy();
+        optimizations.onDestroy();
+        flushSamples();
+        power.stop();
+        MainThreadWatchdog.getInstance().stop();
+        cordova.getActivity().getApplicationContext()
+                .unregisterComponentCallbacks(MemoryManager.getInstance());
+        executor.shutdown();
         super.onDestroy();
-        android.os.Process.killProcess(android.os.Process.myPid());
+        Process.killProcess(Process.myPid());
+    }
+
+    /**
+     * Called when the first keep-alive lease has been opened or the last one
+     * closed. While in background the service starts with the first lease
+     * and stops after the grace period once the last lease is gone.
+     */
+    private void onKeepAliveChanged() {
+        if (!inBackground || !getSettings().requireLease)
+            return;
+
+        handler.removeCallbacks(idleStop);
+
+        if (!keepAlive.isHeld()) {
+            handler.postDelayed(idleStop, getSettings().leaseGrace);
+        } else if (!isStartPending) {
+            startService();
+        }
+    }
+
+    /**
+     * Apply the tier of the power policy to the wake lock duty cycle, the
+     * tick rate and the wake lock of the service.
+     *
+     * @param tier The new tier.
+     */
+    private void applyTier(PowerPolicy.Tier tier) {
+        getWakeLockManager().setPolicyDutyCycle(tier.dutyAwake, tier.dutyPeriod);
+        TickScheduler.setSlowdown(tier.tickSlowdown);
+
+        if (isBind && service != null) {
+            service.setKeepAwake(tier.serviceWakeLock);
+        }
     }
 
     /**
@@ -173,8 +535,10 @@ public class BackgroundMode extends CordovaPlugin {
      */
     private void enableMode() {
         isDisabled = false;
+        prewarm();
+        persist();
 
-        if (inBackground) {
+        if (inBackground && !isStartPending) {
             startService();
         }
     }
@@ -185,15 +549,18 @@ public class BackgroundMode extends CordovaPlugin {
     private void disableMode() {
         stopService();
         isDisabled = true;
+        persist();
     }
 
     /**
      * Update the default settings and configure the notification.
      *
-     * @param settings The settings
+     * @param json     The settings
      * @param update   A truthy value means to update the running service.
      */
-    private void configure(JSONObject settings, boolean update) {
+    private void configure(JSONObject json, boolean update) {
+        Settings settings = Settings.parse(json);
+
         if (update) {
             updateNotification(settings);
         } else {
@@ -206,8 +573,64 @@ public class BackgroundMode extends CordovaPlugin {
      *
      * @param settings The new default settings
      */
-    private void setDefaultSettings(JSONObject settings) {
-        defaultSettings = settings;
+    private void setDefaultSettings(Settings settings) {
+        defaultSettings.set(settings);
+        prewarm();
+        persist();
+    }
+
+    /**
+     * Use the persisted settings if the service got restarted by the
+     * system without the plugin.
+     *
+     * @param settings The restored settings
+     */
+    static void restoreSettings(Settings settings) {
+        defaultSettings.compareAndSet(Settings.DEFAULT, settings);
+    }
+
+    /**
+     * If the plugin has been loaded in this process.
+     */
+    static boolean isLoaded() {
+        return isLoaded;
+    }
+
+    /**
+     * Persist the settings and the state of the mode off the main thread.
+     * Calls made while a write is pending get folded into it.
+     */
+    private void persist() {
+        final Context context = cordova.getActivity().getApplicationContext();
+
+        if (!isPersistPending.compareAndSet(false, true))
+            return;
+
+        executor.execute(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                isPersistPending.set(false);
+                SettingsStore.save(context, new SettingsStore.Snapshot(
+                        getSettings(), !isDisabled, inBackground));
+            }
+        }, null);
+    }
+
+    /**
+     * Register the notification channel and build the notification off the
+     * main thread, so that the service only needs to post it when the app
+     * goes to background.
+     */
+    private void prewarm() {
+        final Context context = cordova.getActivity().getApplicationContext();
+
+        executor.execute(Priority.CONTROL, new Runnable() {
+            @Override
+            public void run() {
+                ResourceCache.getInstance(context).preload();
+                NotificationRenderer.getInstance(context).render(getSettings());
+            }
+        }, null);
     }
 
     /**
@@ -215,8 +638,35 @@ public class BackgroundMode extends CordovaPlugin {
      *
      * @return updateSettings if set or default settings
      */
-    protected static JSONObject getSettings() {
-        return defaultSettings;
+    protected static Settings getSettings() {
+        return defaultSettings.get();
+    }
+
+    /**
+     * The shared manager of the wake lock leases.
+     */
+    private WakeLockManager getWakeLockManager() {
+        return WakeLockManager.getInstance(cordova.getActivity());
+    }
+
+    /**
+     * The sample buffer, mapped on first use.
+     */
+    private synchronized SampleBuffer getSampleBuffer() throws IOException {
+        if (samples == null) {
+            samples = new SampleBuffer(cordova.getActivity());
+        }
+
+        return samples;
+    }
+
+    /**
+     * Write the mapped samples to disk before the process gets killed.
+     */
+    private synchronized void flushSamples() {
+        if (samples != null) {
+            samples.flush();
+        }
     }
 
     /**
@@ -224,104 +674,161 @@ public class BackgroundMode extends CordovaPlugin {
      *
      * @param settings The config settings
      */
-    private void updateNotification(JSONObject settings) {
+    private void updateNotification(Settings settings) {
         if (isBind && service != null && inBackground) {
             service.updateNotification(settings);
         }
     }
 
     /**
-     * Bind the activity to a background service and put them into foreground state.
+     * Update the progress bar of the notification.
+     *
+     * @param max           The max value or 0 to remove the bar.
+     * @param progress      The current value.
+     * @param indeterminate Flag indicates if the progress is unknown.
+     */
+    private void updateProgress(int max, int progress, boolean indeterminate) {
+        if (isBind && service != null && inBackground) {
+            service.updateProgress(max, progress, indeterminate);
+        }
+    }
+
+    /**
+     * Start the service once the app stayed in background for the configured
+     * time, so that short excursions like permission dialogs or the share
+     * sheet don't start and stop the service.
+     */
+    private void scheduleStartService() {
+        long delay = getSettings().debounce;
+
+        handler.removeCallbacks(delayedStart);
+        isStartPending = delay > 0;
+
+        if (isStartPending) {
+            handler.postDelayed(delayedStart, delay);
+        } else {
+            startService();
+        }
+    }
+
+    /**
+     * Keep the app alive by the first keep-alive strategy which succeeds.
      */
     private void startService() {
         Log.d(TAG, "startService()");
-        Activity context = cordova.getActivity();
 
-        if (isDisabled || (isBind && ForegroundService.started))
+        if (isDisabled)
             return;
 
+        if (getSettings().requireLease && !keepAlive.isHeld()) {
+            Log.d(TAG, "No keep-alive lease, service not needed");
+            return;
+        }
+
+        strategies.start();
+    }
+
+    /**
+     * Bind the activity to a background service and put them into foreground state.
+     *
+     * @return false if the service could not be started.
+     */
+    private boolean startForegroundService() {
+        // still bound as the stop has been put off, keep it running
+        if (isBind) {
+            handler.removeCallbacks(delayedStop);
+            return true;
+        }
+
+        Activity context = cordova.getActivity();
+        boolean bound    = false;
+        long start       = TraceLog.begin("startService");
+
         Intent intent = new Intent(context, ForegroundService.class);
 
         try {
-            context.bindService(intent, connection, BIND_AUTO_CREATE);
+            bound = context.bindService(intent, connection, BIND_AUTO_CREATE);
             fireEvent(Event.ACTIVATE, null);
 
             // set started flag to false, to prevent killing it when it's waiting for
             // startForeground.
             ForegroundService.started = false;
+            MainThreadWatchdog.getInstance().onStartRequested();
 
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
                 context.startForegroundService(intent);
             } else {
                 context.startService(intent);
             }
+
+            Metrics.increment(Metrics.SERVICE_STARTS);
         } catch (Exception e) {
-            fireEvent(Event.FAILURE, String.format("'%s'", e.getMessage()));
+            Metrics.increment(Metrics.START_FAILURES);
+            fireEvent(Event.FAILURE, e.getMessage());
+
+            if (bound) {
+                context.unbindService(connection);
+            }
+
+            TraceLog.end(TraceLog.LIFECYCLE, "startService", start, e.getMessage());
+            return false;
         }
 
         isBind = true;
+        TraceLog.end(TraceLog.LIFECYCLE, "startService", start, null);
+        return true;
     }
 
     /**
-     * Bind the activity to a background service and put them into foreground state.
+     * Stop the running keep-alive strategy.
      */
     private void stopService() {
-        stopService(true);
+        Log.d(TAG, "stopService()");
+        strategies.stop();
     }
 
     /**
      * Bind the activity to a background service and put them into foreground state.
      */
-    private void stopService(boolean retry) {
-        Log.d(TAG, "stopService()");
+    private void stopForegroundService(boolean retry) {
+        if (!isBind)
+            return;
 
         // check service if it's running or not, we don't want to kill it in the crucial
         // moment where android is waiting for startForeground.
         if (!ForegroundService.started) {
             Log.d(TAG, "Couldn't stop service, because it hasn't started yet. " + (retry ? "retrying!" : ""));
-            if (retry)
+            TraceLog.instant(TraceLog.LIFECYCLE, "stopService", retry ? "retry" : "not started");
+            if (!retry)
                 return;
-            new Handler().postDelayed(() -> stopService(false), 1000);
+            Metrics.increment(Metrics.STOP_RETRIES);
+            handler.removeCallbacks(delayedStop);
+            handler.postDelayed(delayedStop, STOP_RETRY_DELAY);
             return;
         }
 
         Activity context = cordova.getActivity();
         Intent intent = new Intent(context, ForegroundService.class);
 
-        if (!isBind)
-            return;
+        long start = TraceLog.begin("stopService");
 
         fireEvent(Event.DEACTIVATE, null);
         context.unbindService(connection);
         context.stopService(intent);
+        TraceLog.end(TraceLog.LIFECYCLE, "stopService", start, null);
+        Metrics.increment(Metrics.SERVICE_STOPS);
 
         isBind = false;
     }
 
     /**
-     * Fire vent with some parameters inside the web view.
+     * Fire event with some parameters inside the web view.
      *
      * @param event  The name of the event
      * @param params Optional arguments for the event
      */
     private void fireEvent(Event event, String params) {
-        String eventName = event.name().toLowerCase();
-        Boolean active = event == Event.ACTIVATE;
-
-        String str = String.format("%s._setActive(%b)", JS_NAMESPACE, active);
-
-        str = String.format("%s;%s.on%s(%s)", str, JS_NAMESPACE, eventName, params);
-
-        str = String.format("%s;%s.fireEvent('%s',%s);", str, JS_NAMESPACE, eventName, params);
-
-        final String js = str;
-
-        cordova.getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                webView.loadUrl("javascript:" + js);
-            }
-        });
+        EventChannel.getInstance().send(event.name().toLowerCase(), params);
     }
 
 }
@@ -0,0 +1,189 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plugin owned executor for the asynchronous actions. Tasks are taken from a
+ * bounded priority queue so that the keep-alive control actions run ahead of
+ * bulk work, and no other plugin can delay them.
+ */
+final class CommandExecutor {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Priorities of the tasks, the first one runs first
+    enum Priority {
+        CONTROL, NORMAL, BULK
+    }
+
+    // Default number of worker threads
+    static final int DEFAULT_POOL_SIZE = 2;
+
+    // Default max number of queued tasks
+    static final int DEFAULT_CAPACITY = 32;
+
+    // Tasks running or waiting longer are logged
+    private static final long SLOW_TASK_MILLIS = 100;
+
+    // Sequence to keep the order of tasks with the same priority
+    private final AtomicLong sequence = new AtomicLong();
+
+    // The pending tasks
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<Runnable>();
+
+    // The worker threads
+    private final ThreadPoolExecutor pool;
+
+    // Max number of queued tasks
+    private final int capacity;
+
+    /**
+     * Initialize the executor.
+     *
+     * @param poolSize       The number of worker threads.
+     * @param capacity       The max number of queued tasks.
+     * @param threadPriority The linux thread priority of the workers.
+     */
+    CommandExecutor(int poolSize, int capacity, final int threadPriority) {
+        final AtomicInteger count = new AtomicInteger();
+
+        ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(threadPriority);
+                        runnable.run();
+                    }
+                }, "BackgroundMode-" + count.incrementAndGet());
+
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        this.capacity = Math.max(1, capacity);
+        this.pool     = new ThreadPoolExecutor(Math.max(1, poolSize), Math.max(1, poolSize),
+                30, TimeUnit.SECONDS, queue, factory);
+
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Execute the task asynchronous. If too many tasks are pending the task
+     * gets rejected and the error is reported to the callback.
+     *
+     * @param priority The priority of the task.
+     * @param task     The task to execute.
+     * @param callback The callback to report a rejection or null.
+     * @return true if the task has been queued.
+     */
+    boolean execute(Priority priority, Runnable task, CallbackContext callback) {
+        synchronized (this) {
+            if (queue.size() >= capacity || pool.isShutdown()) {
+                Metrics.increment(Metrics.TASKS_REJECTED);
+                Log.w(TAG, "Rejected " + priority + " task, " + queue.size() + " tasks pending");
+
+                if (callback != null) {
+                    callback.error("Too many pending commands");
+                }
+
+                return false;
+            }
+        }
+
+        pool.execute(new Task(priority, task));
+        return true;
+    }
+
+    /**
+     * Stop the worker threads. Pending tasks are discarded.
+     */
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Task with priority which keeps track of its queue and run time.
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+
+        // The priority of the task
+        private final Priority priority;
+
+        // Position of the task within its priority
+        private final long seq = sequence.incrementAndGet();
+
+        // Time when the task has been queued
+        private final long queuedAt = SystemClock.uptimeMillis();
+
+        // The actual work
+        private final Runnable runnable;
+
+        Task(Priority priority, Runnable runnable) {
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = SystemClock.uptimeMillis();
+
+            try {
+                runnable.run();
+            } finally {
+                long waited = startedAt - queuedAt;
+                long ran    = SystemClock.uptimeMillis() - startedAt;
+
+                Metrics.record(Metrics.TASK_WAIT, waited);
+                Metrics.record(Metrics.TASK_RUN, ran);
+
+                if (waited > SLOW_TASK_MILLIS || ran > SLOW_TASK_MILLIS) {
+                    Log.d(TAG, priority + " task waited " + waited + " ms, ran " + ran + " ms");
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority)
+                return priority.compareTo(other.priority);
+
+            return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+        }
+    }
+
+}
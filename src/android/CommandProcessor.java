@@ -0,0 +1,507 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import de.appplant.cordova.plugin.background.CommandExecutor.Priority;
+
+/**
+ * Long-lived dispatcher for the actions of the plugin. Actions are looked up
+ * in a table built once at startup and run strictly one after another in the
+ * order they have been received, either on the executor or on the main
+ * thread. The priority of an action only decides how it competes with the
+ * other tasks of the executor, never its place among the actions, as later
+ * actions may depend on earlier ones. An action invokes its callback once it
+ * actually ran.
+ */
+final class CommandProcessor {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Name of the action which runs several actions in one pass
+    static final String BATCH = "batch";
+
+    // Name of the action which registers the callback of the events, kept
+    // alive by the web view and thus not batchable
+    static final String LISTEN = "listen";
+
+    /**
+     * Implementation of an action.
+     */
+    interface Action {
+        /**
+         * Executes the action and invokes the callback when done.
+         *
+         * @param args     The exec() arguments.
+         * @param callback The callback context used when
+         *                 calling back into JavaScript.
+         */
+        void run(JSONArray args, CallbackContext callback) throws JSONException;
+    }
+
+    // Where an action runs
+    enum Target {
+        // Right away on the calling thread, bypassing the queue
+        INLINE,
+        // In order on the executor
+        EXECUTOR,
+        // In order on the main thread
+        MAIN
+    }
+
+    // Registered actions by name and lower case name
+    private final Map<String, Command> actions = new HashMap<String, Command>();
+
+    // Commands waiting for their turn
+    private final ArrayDeque<Pending> queue = new ArrayDeque<Pending>();
+
+    // Runs the commands targeting the executor
+    private final CommandExecutor executor;
+
+    // Runs the commands targeting the main thread
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Max number of queued commands
+    private final int capacity;
+
+    // Flag indicates if a command is running
+    private boolean isRunning = false;
+
+    /**
+     * Initialize the processor.
+     *
+     * @param executor The executor to run the commands.
+     * @param capacity The max number of queued commands.
+     */
+    CommandProcessor(CommandExecutor executor, int capacity) {
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Register an action.
+     *
+     * @param name     The name of the action.
+     * @param target   Where the action runs.
+     * @param priority The priority on the executor.
+     * @param action   The implementation.
+     */
+    void register(String name, Target target, Priority priority, Action action) {
+        Command command = new Command(name, target, priority, action);
+
+        actions.put(name, command);
+        actions.put(name.toLowerCase(Locale.ROOT), command);
+    }
+
+    /**
+     * Executes the request.
+     *
+     * @param name     The action to execute.
+     * @param args     The exec() arguments.
+     * @param callback The callback context used when
+     *                 calling back into JavaScript.
+     * @return false if the action is unknown.
+     */
+    boolean execute(String name, JSONArray args, CallbackContext callback) {
+        Command command = actions.get(name);
+
+        if (command == null) {
+            command = actions.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        if (command == null && BATCH.equals(name)) {
+            enqueueBatch(args, callback);
+            return true;
+        }
+
+        if (command == null)
+            return false;
+
+        if (command.target == Target.INLINE) {
+            command.invoke(args, callback);
+        } else {
+            enqueue(new Pending(command, args, callback));
+        }
+
+        return true;
+    }
+
+    /**
+     * Look up the actions of the batch and queue it like a single command.
+     * Unknown actions and listen fail on their own without stopping the
+     * batch. Inline actions run in place on the thread of the batch.
+     *
+     * @param args     The list of [action, args] pairs.
+     * @param callback The callback context of the batch.
+     */
+    private void enqueueBatch(JSONArray args, CallbackContext callback) {
+        JSONArray list     = args.optJSONArray(0);
+        int size           = list != null ? list.length() : 0;
+        Command[] commands = new Command[size];
+        JSONArray[] params = new JSONArray[size];
+
+        for (int i = 0; i < size; i++) {
+            JSONArray item  = list.optJSONArray(i);
+            String name     = item != null ? item.optString(0) : "";
+            Command command = actions.get(name);
+
+            if (command == null) {
+                command = actions.get(name.toLowerCase(Locale.ROOT));
+            }
+
+            JSONArray commandArgs = item != null ? item.optJSONArray(1) : null;
+
+            commands[i] = command != null && !LISTEN.equals(command.name) ? command : null;
+            params[i]   = commandArgs != null ? commandArgs : new JSONArray();
+        }
+
+        if (size == 0) {
+            callback.success(new JSONArray());
+            return;
+        }
+
+        Metrics.increment(Metrics.BATCHES);
+        Metrics.add(Metrics.BATCHED_COMMANDS, size);
+        enqueue(new Batch(commands, params, callback));
+    }
+
+    /**
+     * Add the command to the queue and start it if it's its turn.
+     *
+     * @param pending The command to run.
+     */
+    private synchronized void enqueue(Pending pending) {
+        if (queue.size() >= capacity) {
+            Log.w(TAG, "Rejected " + pending.getName() + ", " + queue.size() + " commands pending");
+            Metrics.increment(Metrics.TASKS_REJECTED);
+            pending.callback.error("Too many pending commands");
+            return;
+        }
+
+        queue.add(pending);
+
+        if (!isRunning) {
+            isRunning = true;
+            next();
+        }
+    }
+
+    /**
+     * Start the next command once the previous one has finished. Commands
+     * the executor rejects fail right away.
+     */
+    private synchronized void next() {
+        Pending pending;
+
+        while ((pending = queue.poll()) != null) {
+            if (pending.getTarget() == Target.MAIN) {
+                handler.post(pending);
+                return;
+            }
+
+            // the executor reports a rejection to the callback
+            if (executor.execute(pending.getPriority(), pending, pending.callback))
+                return;
+        }
+
+        isRunning = false;
+    }
+
+    /**
+     * A registered action with its dispatch settings.
+     */
+    private static final class Command {
+
+        // The name of the action
+        final String name;
+
+        // Where the action runs
+        final Target target;
+
+        // The priority on the executor
+        final Priority priority;
+
+        // The implementation
+        final Action action;
+
+        Command(String name, Target target, Priority priority, Action action) {
+            this.name     = name;
+            this.target   = target;
+            this.priority = priority;
+            this.action   = action;
+        }
+
+        /**
+         * Run the action and report parse errors to the callback.
+         */
+        void invoke(JSONArray args, CallbackContext callback) {
+            long start = TraceLog.begin(name);
+
+            try {
+                action.run(args, callback);
+            } catch (JSONException e) {
+                callback.error("Error parsing json");
+            } finally {
+                TraceLog.end(TraceLog.COMMAND, name, start, null);
+            }
+        }
+    }
+
+    /**
+     * A received command waiting for its turn.
+     */
+    private class Pending implements Runnable {
+
+        // The command to run
+        final Command command;
+
+        // The exec() arguments
+        final JSONArray args;
+
+        // The callback context of the request
+        final CallbackContext callback;
+
+        Pending(Command command, JSONArray args, CallbackContext callback) {
+            this.command  = command;
+            this.args     = args;
+            this.callback = callback;
+        }
+
+        /**
+         * The name of the command.
+         */
+        String getName() {
+            return command.name;
+        }
+
+        /**
+         * Where the command starts.
+         */
+        Target getTarget() {
+            return command.target;
+        }
+
+        /**
+         * The priority on the executor.
+         */
+        Priority getPriority() {
+            return command.priority;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.invoke(args, callback);
+            } finally {
+                next();
+            }
+        }
+    }
+
+    /**
+     * Several commands run in order as one queued command. Consecutive
+     * commands with the same target run in one go, the batch only moves
+     * to the main thread or the executor where the target changes. A command
+     * which throws or which the executor rejects fails without stopping the
+     * batch. The results are collected and sent together.
+     */
+    private final class Batch extends Pending {
+
+        // The commands or null for the ones which cannot run
+        private final Command[] commands;
+
+        // The arguments per command
+        private final JSONArray[] params;
+
+        // The result per command
+        private final JSONArray results = new JSONArray();
+
+        // Index of the next command
+        private int index = 0;
+
+        Batch(Command[] commands, JSONArray[] params, CallbackContext callback) {
+            super(commands[0], params[0], callback);
+            this.commands = commands;
+            this.params   = params;
+        }
+
+        @Override
+        String getName() {
+            return BATCH;
+        }
+
+        @Override
+        Target getTarget() {
+            return commands[0] != null ? commands[0].target : Target.EXECUTOR;
+        }
+
+        @Override
+        Priority getPriority() {
+            return commands[0] != null ? commands[0].priority : Priority.CONTROL;
+        }
+
+        @Override
+        public void run() {
+            boolean onMain = Looper.myLooper() == Looper.getMainLooper();
+
+            while (index < commands.length) {
+                Command command = commands[index];
+
+                if (command != null && command.target == Target.MAIN && !onMain) {
+                    handler.post(this);
+                    return;
+                }
+
+                if (command != null && command.target == Target.EXECUTOR && onMain) {
+                    if (executor.execute(command.priority, this, null))
+                        return;
+
+                    results.put(failure("Too many pending commands"));
+                    index++;
+                    continue;
+                }
+
+                results.put(invoke(command, params[index]));
+                index++;
+            }
+
+            callback.success(results);
+            next();
+        }
+
+        /**
+         * Run the command and capture its result.
+         *
+         * @param command The command or null if it cannot run.
+         * @param args    The exec() arguments.
+         * @return The result as { ok, result } or { ok, error }.
+         */
+        private JSONObject invoke(Command command, JSONArray args) {
+            if (command == null)
+                return failure("Action not available in batch");
+
+            JSONObject json     = new JSONObject();
+            Collector collector = new Collector(callback);
+
+            try {
+                command.invoke(args, collector);
+
+                PluginResult result = collector.result;
+                boolean ok          = result == null || result.getStatus() == Status.OK.ordinal()
+                        || result.getStatus() == Status.NO_RESULT.ordinal();
+
+                json.put("ok", ok);
+                json.put(ok ? "result" : "error", result != null ? valueOf(result) : JSONObject.NULL);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Batched " + command.name + " failed", e);
+                return failure(e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+
+            return json;
+        }
+
+        /**
+         * The result of a command which did not run.
+         *
+         * @param error The reason.
+         * @return The result as { ok, error }.
+         */
+        private JSONObject failure(String error) {
+            JSONObject json = new JSONObject();
+
+            try {
+                json.put("ok", false);
+                json.put("error", error);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+
+            return json;
+        }
+    }
+
+    /**
+     * Keeps the first result of a command run by a batch.
+     */
+    private static final class Collector extends CallbackContext {
+
+        // The first result or null
+        PluginResult result;
+
+        /**
+         * Initialize the collector. The results are never sent to the
+         * web view.
+         *
+         * @param batch The callback context of the batch.
+         */
+        Collector(CallbackContext batch) {
+            super(batch.getCallbackId(), null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            if (result == null) {
+                result = pluginResult;
+            }
+        }
+    }
+
+    /**
+     * The message of the result as JSON value.
+     *
+     * @param result The result of a command.
+     */
+    private static Object valueOf(PluginResult result) throws JSONException {
+        switch (result.getMessageType()) {
+            case PluginResult.MESSAGE_TYPE_STRING:
+                return result.getStrMessage();
+            case PluginResult.MESSAGE_TYPE_JSON:
+            case PluginResult.MESSAGE_TYPE_NUMBER:
+            case PluginResult.MESSAGE_TYPE_BOOLEAN:
+                return new JSONTokener(result.getMessage()).nextValue();
+            case PluginResult.MESSAGE_TYPE_NULL:
+                return JSONObject.NULL;
+            default:
+                // binary results are base64 encoded
+                return result.getMessage();
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Delivers events to JavaScript through a kept-alive callback instead of
+ * injecting scripts into the web view. Events fired within the same frame
+ * are sent as one batch, and events fired while no callback is registered
+ * (e.g. the page is reloading) are kept in a bounded ring buffer until the
+ * page has registered again.
+ */
+final class EventChannel {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Max number of events kept while the web view is not ready
+    private static final int CAPACITY = 64;
+
+    // Events fired within that time are delivered together
+    private static final long FRAME_MILLIS = 16;
+
+    // The shared instance
+    private static final EventChannel instance = new EventChannel();
+
+    // Buffered events not yet delivered
+    private final JSONObject[] ring = new JSONObject[CAPACITY];
+
+    // Used to deliver the batches on the main thread
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Delivers the buffered events
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Index of the oldest buffered event
+    private int head = 0;
+
+    // Number of buffered events
+    private int size = 0;
+
+    // Number of events dropped because the buffer was full
+    private int dropped = 0;
+
+    // Flag indicates if a flush has been scheduled
+    private boolean flushScheduled = false;
+
+    // The kept-alive callback registered by the page
+    private CallbackContext callback;
+
+    private EventChannel() {}
+
+    /**
+     * The shared event channel.
+     */
+    static EventChannel getInstance() {
+        return instance;
+    }
+
+    /**
+     * Register the callback of the page. Buffered events will be delivered
+     * right after.
+     *
+     * @param callback The callback to keep alive.
+     */
+    synchronized void register(CallbackContext callback) {
+        this.callback = callback;
+
+        if (size > 0) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Forget the callback, e.g. because the page is going to be reloaded.
+     * Events will be buffered until the page registers again.
+     */
+    synchronized void unregister() {
+        callback = null;
+    }
+
+    /**
+     * Fire an event inside the web view.
+     *
+     * @param event The name of the event.
+     * @param data  Optional argument for the event.
+     */
+    synchronized void send(String event, Object data) {
+        JSONObject item = encode(event, data);
+
+        if (item == null)
+            return;
+
+        if (size == CAPACITY) {
+            head = (head + 1) % CAPACITY;
+            size--;
+            dropped++;
+        }
+
+        ring[(head + size) % CAPACITY] = item;
+        size++;
+
+        Metrics.increment(Metrics.EVENTS_FIRED);
+
+        scheduleFlush();
+    }
+
+    /**
+     * The item of the batch for the event.
+     *
+     * @param event The name of the event.
+     * @param data  Optional argument for the event.
+     * @return null if the data could not be serialized.
+     */
+    static JSONObject encode(String event, Object data) {
+        JSONObject item = new JSONObject();
+
+        try {
+            item.put("event", event);
+            item.put("data", data != null ? data : JSONObject.NULL);
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not serialize event " + event, e);
+            return null;
+        }
+
+        return item;
+    }
+
+    /**
+     * Deliver the batch with the next frame.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled || callback == null)
+            return;
+
+        flushScheduled = true;
+        handler.postDelayed(flush, FRAME_MILLIS);
+    }
+
+    /**
+     * Send all buffered events as one batch to the registered callback.
+     */
+    private synchronized void flush() {
+        flushScheduled = false;
+
+        if (callback == null || size == 0)
+            return;
+
+        JSONArray batch = new JSONArray();
+
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % CAPACITY;
+            batch.put(ring[index]);
+            ring[index] = null;
+        }
+
+        head = 0;
+        size = 0;
+
+        if (dropped > 0) {
+            Log.w(TAG, "Dropped " + dropped + " events while the web view was not ready");
+            dropped = 0;
+        }
+
+        PluginResult result = new PluginResult(Status.OK, batch);
+        result.setKeepCallback(true);
+        callback.sendPluginResult(result);
+    }
+
+}
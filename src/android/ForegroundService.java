@@ -21,26 +21,15 @@
 
 package de.appplant.cordova.plugin.background;
 
-import android.annotation.TargetApi;
 import android.app.Notification;
-import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
-import android.content.res.Resources;
+import android.content.res.Configuration;
 import android.os.Binder;
-import android.os.Build;
 import android.os.IBinder;
-import android.os.PowerManager;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import static android.os.PowerManager.PARTIAL_WAKE_LOCK;
 
 /**
  * Puts the service in a foreground state, where the system considers it to be
@@ -53,23 +42,25 @@ public class ForegroundService extends Service {
     public static final int NOTIFICATION_ID = -574543954;
     public static final String NOTIFICATION_CHANNEL_ID = "ETRAILER_CHANNEL";
 
-    // Default title of the background notification
-    private static final String NOTIFICATION_TITLE = "App is running in background";
-
-    // Default text of the background notification
-    private static final String NOTIFICATION_TEXT = "Doing heavy tasks.";
-
-    // Default icon of the background notification
-    private static final String NOTIFICATION_ICON = "icon";
     private static final String TAG = "ForegroundService";
 
     // Binder given to clients
     private final IBinder mBinder = new ForegroundBinder();
 
-    // Partial wake lock to prevent the app from going to sleep when locked
-    private PowerManager.WakeLock wakeLock;
+    // Builds the notification and keeps the last rendered template
+    private NotificationRenderer renderer;
+
+    // Posts the updates of the notification at a limited rate
+    private NotificationPipeline pipeline;
+
+    // Name of the wake lock lease held by the service
+    static final String WAKE_LOCK_LEASE = "service";
+
     public static boolean started = false;
 
+    // Flag indicates if the restored state says the service should not run
+    private boolean isStale = false;
+
     /**
      * Allow clients to call on to the service.
      */
@@ -94,22 +85,73 @@ public class ForegroundService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "startId - " + startId);
+        TraceLog.instant(TraceLog.LIFECYCLE, "onStartCommand", "startId " + startId);
+
+        long start = TraceLog.begin("startForeground");
         this.startForeground(NOTIFICATION_ID, makeNotification());
         ForegroundService.started = true;
+        TraceLog.end(TraceLog.LIFECYCLE, "startForeground", start, null);
+        MainThreadWatchdog.getInstance().onStartForeground();
+
+        if (isStale) {
+            Log.d(TAG, "Restored mode is off or without lease, stopping");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        long latency = Metrics.onStartForeground();
+
+        if (latency >= 0) {
+            Log.d(TAG, "startForeground " + latency + " ms after pause");
+        }
+
         return START_STICKY;
     }
 
 
     /**
-     * Put the service in a foreground state to prevent app from being killed by the
-     * OS.
+     * Prepare the service. The foreground state is entered with
+     * onStartCommand, using the notification prepared by the plugin or the
+     * persisted settings if the system restarted the service.
      */
     @Override
     public void onCreate() {
         super.onCreate();
-        this.startForeground(NOTIFICATION_ID, makeNotification());
-        ForegroundService.started = true;
+
+        long start = TraceLog.begin("onCreate");
+
+        if (!BackgroundMode.isLoaded()) {
+            restoreSettings();
+        }
+
+        ResourceCache.getInstance(this).preload();
+        renderer = NotificationRenderer.getInstance(this);
+        pipeline = new NotificationPipeline(this, renderer);
         keepAwake();
+        TickScheduler.start(this);
+
+        TraceLog.end(TraceLog.LIFECYCLE, "onCreate", start, null);
+    }
+
+    /**
+     * Resolved resources might differ for the new configuration.
+     */
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        ResourceCache.getInstance(this).invalidate();
+        renderer.invalidate();
+    }
+
+    /**
+     * Forward memory pressure to the plugin's memory manager.
+     *
+     * @param level The trim level.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryManager.getInstance().onTrimMemory(level);
     }
 
     /**
@@ -118,191 +160,89 @@ public class ForegroundService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        TraceLog.instant(TraceLog.LIFECYCLE, "onServiceDestroy", null);
+        TickScheduler.stop();
+        pipeline.close();
         sleepWell();
     }
 
     /**
-     * Put the service in a foreground state to prevent app from being killed by the
-     * OS.
+     * Load the settings persisted by the plugin before the process got
+     * killed. The keep-alive leases died with the process, so a mode which
+     * requires one has nothing left to keep alive.
      */
-    private void keepAwake() {
-        PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
-
-        assert pm != null;
+    private void restoreSettings() {
+        SettingsStore.Snapshot snapshot = SettingsStore.load(this);
 
-        wakeLock = pm.newWakeLock(PARTIAL_WAKE_LOCK, "etrailer:foreground_service");
-        wakeLock.acquire(2 * 24 * 60 * 60 * 1000);
-    }
+        Metrics.increment(Metrics.STICKY_RESTARTS);
 
-    /**
-     * Stop background mode.
-     */
-    private void sleepWell() {
-        ForegroundService.started = false;
-        stopForeground(true);
-        getNotificationManager().cancel(NOTIFICATION_ID);
+        if (snapshot == null)
+            return;
 
-        if (wakeLock != null) {
-            wakeLock.release();
-            wakeLock = null;
-        }
+        BackgroundMode.restoreSettings(snapshot.settings);
+        isStale = !snapshot.enabled || !snapshot.inBackground
+                || snapshot.settings.requireLease;
     }
 
     /**
-     * Create a notification as the visible part to be able to put the service in a
-     * foreground state by using the default settings.
+     * Put the service in a foreground state to prevent app from being killed by the
+     * OS.
      */
-    private Notification makeNotification() {
-        return makeNotification(BackgroundMode.getSettings());
-    }
-
-    private void createNotificationChannel() {
-        // Create the NotificationChannel, but only on API 26+ because
-        // the NotificationChannel class is new and not in the support library
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "Activity notification";
-            String description = "Shows that the app is running in the background.";
-            int importance = NotificationManager.IMPORTANCE_LOW;
-
-            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-
-            // Register the channel with the system; you can't change the importance
-            // or other notification behaviors after this
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            assert notificationManager != null;
-            notificationManager.createNotificationChannel(channel);
-        }
+    private void keepAwake() {
+        setKeepAwake(PowerPolicy.getTier().serviceWakeLock);
     }
 
     /**
-     * Create a notification as the visible part to be able to put the service in a
-     * foreground state.
+     * Hold or release the wake lock lease of the service.
      *
-     * @param settings The config settings
+     * @param allowed If the power policy allows to hold the lease.
      */
-    private Notification makeNotification(JSONObject settings) {
-        createNotificationChannel();
+    protected void setKeepAwake(boolean allowed) {
+        WakeLockManager manager = WakeLockManager.getInstance(this);
 
-        String title = settings.optString("title", NOTIFICATION_TITLE);
-        String text = settings.optString("text", NOTIFICATION_TEXT);
-
-        boolean bigText = settings.optBoolean("bigText", false);
-
-        Context context = getApplicationContext();
-        String pkgName = context.getPackageName();
-        Intent intent = context.getPackageManager().getLaunchIntentForPackage(pkgName);
-
-        NotificationCompat.Builder notification = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
-                .setContentTitle(title).setContentText(text).setOngoing(true);
-
-        if (getIconResId(settings) != 0) {
-            notification.setSmallIcon(getIconResId(settings));
+        if (allowed && BackgroundMode.getSettings().keepAwake) {
+            manager.acquire(WAKE_LOCK_LEASE, 0);
         } else {
-            try {
-                settings.put("icon", "icon");
-                notification.setSmallIcon(getIconResId(settings));
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-
-        if (settings.optBoolean("hidden", true)) {
-            notification.setPriority(Notification.PRIORITY_MIN);
+            manager.release(WAKE_LOCK_LEASE);
         }
-
-        if (bigText || text.contains("\n")) {
-            notification.setStyle(new NotificationCompat.BigTextStyle().bigText(text));
-        }
-
-        setColor(notification, settings);
-
-        if (intent != null && settings.optBoolean("resume")) {
-            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-            PendingIntent contentIntent = PendingIntent.getActivity(context, NOTIFICATION_ID, intent,
-                    PendingIntent.FLAG_UPDATE_CURRENT);
-
-            notification.setContentIntent(contentIntent);
-        }
-
-        return notification.build();
     }
 
     /**
-     * Update the notification.
-     *
-     * @param settings The config settings
+     * Stop background mode.
      */
-    protected void updateNotification(JSONObject settings) {
-        boolean isSilent = settings.optBoolean("silent", false);
-
-        if (isSilent) {
-            super.stopForeground(true);
-            return;
-        }
-
-        Notification notification = makeNotification(settings);
-        getNotificationManager().notify(NOTIFICATION_ID, notification);
+    private void sleepWell() {
+        ForegroundService.started = false;
+        stopForeground(true);
+        getNotificationManager().cancel(NOTIFICATION_ID);
+        WakeLockManager.getInstance(this).release(WAKE_LOCK_LEASE);
     }
 
     /**
-     * Retrieves the resource ID of the app icon.
-     *
-     * @param settings A JSON dict containing the icon name.
+     * Create a notification as the visible part to be able to put the service in a
+     * foreground state by using the default settings.
      */
-    private int getIconResId(JSONObject settings) {
-        String icon = settings.optString("icon", NOTIFICATION_ICON);
-
-        // cordova-android 6 uses mipmaps
-        int resId = getIconResId(icon, "mipmap");
-
-        if (resId == 0) {
-            resId = getIconResId(icon, "drawable");
-        }
-
-        return resId;
+    private Notification makeNotification() {
+        return renderer.render(BackgroundMode.getSettings());
     }
 
     /**
-     * Retrieve resource id of the specified icon.
+     * Update the notification.
      *
-     * @param icon The name of the icon.
-     * @param type The resource type where to look for.
-     * @return The resource id or 0 if not found.
+     * @param settings The config settings
      */
-    private int getIconResId(String icon, String type) {
-        Resources res = getResources();
-        String pkgName = getPackageName();
-
-        int resId = res.getIdentifier(icon, type, pkgName);
-
-        if (resId == 0) {
-            resId = res.getIdentifier("icon", type, pkgName);
-        }
-
-        return resId;
+    protected void updateNotification(Settings settings) {
+        pipeline.submit(settings);
     }
 
     /**
-     * Set notification color if its supported by the SDK.
+     * Update the progress bar of the notification.
      *
-     * @param notification A Notification.Builder instance
-     * @param settings     A JSON dict containing the color definition (red: FF0000)
+     * @param max           The max value or 0 to remove the bar.
+     * @param progress      The current value.
+     * @param indeterminate Flag indicates if the progress is unknown.
      */
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private void setColor(NotificationCompat.Builder notification, JSONObject settings) {
-
-        String hex = settings.optString("color", null);
-
-        if (Build.VERSION.SDK_INT < 21 || hex == null)
-            return;
-
-        try {
-            int aRGB = Integer.parseInt(hex, 16) + 0xFF000000;
-            notification.setColor(aRGB);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    protected void updateProgress(int max, int progress, boolean indeterminate) {
+        pipeline.submitProgress(max, progress, indeterminate);
     }
 
     /**
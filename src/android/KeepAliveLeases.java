@@ -0,0 +1,124 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Named leases opened by JS to tell that there is work left to do in
+ * background. The plugin keeps the service running only while a lease is
+ * live. The lifetime of each lease is accounted.
+ */
+final class KeepAliveLeases {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Notifies the plugin
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Called on the main thread when the first lease opened or the last closed
+    private final Runnable onChange;
+
+    // The leases by name, expiring on the scheduler
+    private final LeaseTable leases = new LeaseTable(Scheduler.getHandler(), name -> {
+        Log.d(TAG, "Keep-alive lease " + name + " expired");
+        release(name);
+    });
+
+    /**
+     * Initialize the leases.
+     *
+     * @param onChange Called on the main thread when the first lease
+     *                 has been opened or the last one closed.
+     */
+    KeepAliveLeases(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Open or renew the named lease.
+     *
+     * @param name    The name of the lease.
+     * @param timeout Time after the lease expires or 0 to keep it
+     *                until released.
+     */
+    synchronized void acquire(String name, long timeout) {
+        if (leases.open(name, timeout)) {
+            mainHandler.post(onChange);
+        }
+    }
+
+    /**
+     * Close the named lease.
+     *
+     * @param name The name of the lease.
+     */
+    synchronized void release(String name) {
+        if (leases.close(name) && leases.getLive() == 0) {
+            mainHandler.post(onChange);
+        }
+    }
+
+    /**
+     * If at least one lease is live.
+     */
+    synchronized boolean isHeld() {
+        return leases.getLive() > 0;
+    }
+
+    /**
+     * The lifetimes per lease and of the evicted ones.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json              = new JSONObject();
+        long now                     = SystemClock.elapsedRealtime();
+        List<LeaseTable.Lease> items = new ArrayList<LeaseTable.Lease>(leases.getLeases());
+
+        if (leases.getEvicted() != null) {
+            items.add(leases.getEvicted());
+        }
+
+        for (LeaseTable.Lease lease : items) {
+            JSONObject item = new JSONObject();
+
+            item.put("live", lease.live);
+            item.put("count", lease.count);
+            item.put("total", lease.getTotal(now));
+            item.put("last", lease.last);
+            item.put("max", lease.max);
+
+            json.put(lease.name, item);
+        }
+
+        return json;
+    }
+
+}
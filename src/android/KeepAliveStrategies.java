@@ -0,0 +1,535 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static android.content.Context.ALARM_SERVICE;
+import static android.content.Context.JOB_SCHEDULER_SERVICE;
+import static android.content.Context.POWER_SERVICE;
+
+/**
+ * Picks the strategy which keeps the app alive in background. The foreground
+ * service comes first. If it cannot be started, like when the system refuses
+ * to start it from background, the app gets woken up periodically by exact
+ * alarms allowed while idle or by jobs instead. Alarms come first while the
+ * device dozes, as jobs are deferred to the maintenance windows then. A
+ * strategy which fails to arm its next wakeup is replaced by the next one.
+ */
+final class KeepAliveStrategies {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Names of the strategies as used in JS
+    static final String SERVICE = "service";
+    static final String ALARM   = "alarm";
+    static final String JOB     = "job";
+
+    // Default time between two wakeups
+    static final long DEFAULT_INTERVAL = 15 * 60 * 1000;
+
+    // Lower bound of the time between two wakeups
+    private static final long MIN_INTERVAL = 60 * 1000;
+
+    // Time the CPU is kept awake per wakeup, the system grants about as
+    // long to alarms fired while idle
+    static final long WAKEUP_WINDOW = 10 * 1000;
+
+    // Name of the wake lock lease held per wakeup
+    static final String WAKE_LOCK_LEASE = "wakeup";
+
+    // Id of the wakeup job
+    private static final int JOB_ID = 0x42474d;
+
+    // The strategies of the loaded plugin, used by the receivers
+    private static volatile KeepAliveStrategies instance;
+
+    /**
+     * How a strategy has been doing.
+     */
+    private static final class Stats {
+
+        // Number of successful starts including the armed wakeups
+        long starts = 0;
+
+        // Number of failed starts
+        long failures = 0;
+
+        // Number of wakeups
+        long wakeups = 0;
+
+        // Message of the last failure
+        String error;
+    }
+
+    // Application context
+    private final Context context;
+
+    // Strategies in their default order
+    private final KeepAliveStrategy service;
+    private final KeepAliveStrategy alarm = new AlarmStrategy();
+    private final KeepAliveStrategy job   = new JobStrategy();
+
+    // Stats per strategy name
+    private final Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+
+    // Ends the wakeup windows
+    private final Handler handler = Scheduler.getHandler();
+
+    // Time between two wakeups
+    private volatile long interval = DEFAULT_INTERVAL;
+
+    // The running strategy or null
+    private KeepAliveStrategy active;
+
+    // Flag indicates if the service failed, skipped until the next stop
+    private boolean serviceFailed = false;
+
+    // Number of switches caused by failures
+    private long switches = 0;
+
+    /**
+     * Initialize the strategies.
+     *
+     * @param context Any context of the app.
+     * @param service Starts and stops the foreground service.
+     */
+    KeepAliveStrategies(Context context, KeepAliveStrategy service) {
+        this.context = context.getApplicationContext();
+        this.service = service;
+
+        stats.put(SERVICE, new Stats());
+        stats.put(ALARM, new Stats());
+        stats.put(JOB, new Stats());
+
+        instance = this;
+    }
+
+    /**
+     * Set the time between two wakeups.
+     *
+     * @param interval The interval in ms.
+     */
+    void setInterval(long interval) {
+        this.interval = Math.max(MIN_INTERVAL, interval);
+    }
+
+    /**
+     * Start the first strategy which succeeds.
+     *
+     * @return false if no strategy could be started.
+     */
+    synchronized boolean start() {
+        if (active != null)
+            return true;
+
+        return select(null, "start");
+    }
+
+    /**
+     * Stop the running strategy. The service gets tried first again with
+     * the next start.
+     */
+    synchronized void stop() {
+        KeepAliveStrategy strategy = active;
+
+        active        = null;
+        serviceFailed = false;
+
+        if (strategy != null) {
+            strategy.stop(context);
+        }
+
+        if (strategy != null && strategy != service) {
+            WakeLockManager.getInstance(context).release(WAKE_LOCK_LEASE);
+        }
+    }
+
+    /**
+     * Called by the receivers when the app got woken up. Wakeups without
+     * a loaded plugin, like after the process got restarted, cancel all
+     * further wakeups.
+     *
+     * @param context Any context of the app.
+     * @param name    The name of the strategy.
+     * @param done    Called once the wakeup window has passed, may be null.
+     * @return false if the wakeup has been ignored and done not called.
+     */
+    static boolean onWakeup(Context context, String name, Runnable done) {
+        KeepAliveStrategies strategies = instance;
+
+        if (strategies != null && strategies.wakeup(name, done))
+            return true;
+
+        Log.d(TAG, "Unexpected " + name + " wakeup, cancelling");
+        new AlarmStrategy().stop(context);
+        new JobStrategy().stop(context);
+
+        return false;
+    }
+
+    /**
+     * The running strategy, the order of the candidates and the stats.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json       = new JSONObject();
+        JSONObject strategies = new JSONObject();
+
+        for (KeepAliveStrategy strategy : new KeepAliveStrategy[] { service, alarm, job }) {
+            Stats s         = stats.get(strategy.getName());
+            JSONObject item = new JSONObject();
+
+            item.put("supported", strategy.isSupported(context));
+            item.put("starts", s.starts);
+            item.put("failures", s.failures);
+            item.put("wakeups", s.wakeups);
+            item.putOpt("error", s.error);
+
+            strategies.put(strategy.getName(), item);
+        }
+
+        json.put("active", active != null ? active.getName() : JSONObject.NULL);
+        json.put("interval", interval);
+        json.put("idle", isDeviceIdle());
+        json.put("switches", switches);
+        json.put("strategies", strategies);
+
+        return json;
+    }
+
+    /**
+     * Hold the CPU for the wakeup window, tell JS and arm the next wakeup
+     * once the window has passed.
+     *
+     * @param name The name of the strategy.
+     * @param done Called once the wakeup window has passed, may be null.
+     * @return false if the strategy is not running.
+     */
+    private synchronized boolean wakeup(final String name, final Runnable done) {
+        if (active == null || !active.getName().equals(name))
+            return false;
+
+        Stats s = stats.get(name);
+        s.wakeups++;
+
+        Metrics.increment(Metrics.FALLBACK_WAKEUPS);
+        WakeLockManager.getInstance(context).acquire(WAKE_LOCK_LEASE, WAKEUP_WINDOW);
+
+        JSONObject data = new JSONObject();
+
+        try {
+            data.put("strategy", name);
+            data.put("wakeups", s.wakeups);
+            data.put("window", WAKEUP_WINDOW);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        EventChannel.getInstance().send("wakeup", data);
+
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (done != null) {
+                    done.run();
+                }
+
+                rearm(name);
+            }
+        }, WAKEUP_WINDOW);
+
+        return true;
+    }
+
+    /**
+     * Arm the next wakeup or switch to the next strategy on failure.
+     *
+     * @param name The name of the strategy.
+     */
+    private synchronized void rearm(String name) {
+        if (active == null || !active.getName().equals(name))
+            return;
+
+        if (tryStart(active))
+            return;
+
+        KeepAliveStrategy failed = active;
+
+        active = null;
+        failed.stop(context);
+        select(failed, "rearm");
+    }
+
+    /**
+     * Start the first candidate which succeeds and tell JS about it.
+     *
+     * @param failed  The strategy which has failed or null.
+     * @param trigger Why a strategy gets selected.
+     * @return false if no strategy could be started.
+     */
+    private boolean select(KeepAliveStrategy failed, String trigger) {
+        for (KeepAliveStrategy strategy : candidates()) {
+            if (strategy == failed || !tryStart(strategy))
+                continue;
+
+            active = strategy;
+
+            if (failed != null || strategy != service) {
+                switches++;
+                Metrics.increment(Metrics.STRATEGY_SWITCHES);
+            }
+
+            Log.i(TAG, "Keep-alive strategy " + strategy.getName() + " on " + trigger);
+            TraceLog.instant(TraceLog.LIFECYCLE, "strategy", strategy.getName() + " on " + trigger);
+            notifyStrategy(strategy, failed, trigger);
+
+            return true;
+        }
+
+        Log.w(TAG, "No keep-alive strategy could be started");
+        notifyStrategy(null, failed, trigger);
+
+        return false;
+    }
+
+    /**
+     * The strategies to try in order. The service is skipped after it
+     * failed, alarms go before jobs while the device dozes.
+     */
+    private List<KeepAliveStrategy> candidates() {
+        List<KeepAliveStrategy> list = new ArrayList<KeepAliveStrategy>(3);
+
+        if (!serviceFailed) {
+            list.add(service);
+        }
+
+        if (isDeviceIdle()) {
+            list.add(alarm);
+            list.add(job);
+        } else {
+            list.add(job);
+            list.add(alarm);
+        }
+
+        return list;
+    }
+
+    /**
+     * Start the strategy and count the outcome.
+     *
+     * @param strategy The strategy to start.
+     * @return false if the strategy could not be started.
+     */
+    private boolean tryStart(KeepAliveStrategy strategy) {
+        Stats s = stats.get(strategy.getName());
+        boolean started;
+
+        if (!strategy.isSupported(context))
+            return false;
+
+        try {
+            started = strategy.start(context, interval);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not start keep-alive strategy " + strategy.getName(), e);
+            s.error = e.getMessage();
+            started = false;
+        }
+
+        if (started) {
+            s.starts++;
+        } else {
+            s.failures++;
+            serviceFailed |= strategy == service;
+        }
+
+        return started;
+    }
+
+    /**
+     * Tell JS which strategy runs now.
+     *
+     * @param strategy The started strategy or null.
+     * @param failed   The strategy which has failed or null.
+     * @param trigger  Why the strategy has been selected.
+     */
+    private void notifyStrategy(KeepAliveStrategy strategy, KeepAliveStrategy failed, String trigger) {
+        JSONObject data = new JSONObject();
+
+        try {
+            data.put("strategy", strategy != null ? strategy.getName() : JSONObject.NULL);
+            data.put("failed", failed != null ? failed.getName() : JSONObject.NULL);
+            data.put("trigger", trigger);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        EventChannel.getInstance().send("strategy", data);
+    }
+
+    /**
+     * If the device dozes.
+     */
+    private boolean isDeviceIdle() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+            return false;
+
+        PowerManager pm = (PowerManager) context.getSystemService(POWER_SERVICE);
+
+        return pm != null && pm.isDeviceIdleMode();
+    }
+
+    /**
+     * Wakes the app up by exact alarms which fire while idle too. The
+     * system limits them to about one per 9 minutes while the device dozes.
+     * Android 12+ allows exact alarms only while the user grants them.
+     */
+    static final class AlarmStrategy implements KeepAliveStrategy {
+
+        @Override
+        public String getName() {
+            return ALARM;
+        }
+
+        @Override
+        public boolean isSupported(Context context) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S)
+                return true;
+
+            AlarmManager am = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+
+            return am != null && am.canScheduleExactAlarms();
+        }
+
+        @Override
+        public boolean start(Context context, long interval) {
+            AlarmManager am      = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+            PendingIntent intent = getIntent(context);
+            long at              = SystemClock.elapsedRealtime() + interval;
+
+            if (am == null)
+                return false;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                am.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, at, intent);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                am.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, at, intent);
+            } else {
+                am.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, at, intent);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void stop(Context context) {
+            AlarmManager am = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+
+            if (am != null) {
+                am.cancel(getIntent(context));
+            }
+        }
+
+        /**
+         * The intent delivered to the receiver.
+         *
+         * @param context Any context of the app.
+         */
+        private static PendingIntent getIntent(Context context) {
+            Intent intent = new Intent(context, WakeupReceiver.class);
+            int flags     = PendingIntent.FLAG_UPDATE_CURRENT;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                flags |= PendingIntent.FLAG_IMMUTABLE;
+            }
+
+            return PendingIntent.getBroadcast(context, 0, intent, flags);
+        }
+    }
+
+    /**
+     * Wakes the app up by a job which the system runs within the interval
+     * or with the next maintenance window while the device dozes.
+     */
+    static final class JobStrategy implements KeepAliveStrategy {
+
+        @Override
+        public String getName() {
+            return JOB;
+        }
+
+        @Override
+        public boolean isSupported(Context context) {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+        }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        public boolean start(Context context, long interval) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(JOB_SCHEDULER_SERVICE);
+            ComponentName target   = new ComponentName(context, WakeupJobService.class);
+
+            if (scheduler == null)
+                return false;
+
+            JobInfo job = new JobInfo.Builder(JOB_ID, target)
+                    .setMinimumLatency(interval)
+                    .setOverrideDeadline(interval * 2)
+                    .build();
+
+            return scheduler.schedule(job) == JobScheduler.RESULT_SUCCESS;
+        }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        public void stop(Context context) {
+            if (!isSupported(context))
+                return;
+
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(JOB_SCHEDULER_SERVICE);
+
+            if (scheduler != null) {
+                scheduler.cancel(JOB_ID);
+            }
+        }
+    }
+
+}
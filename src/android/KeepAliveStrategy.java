@@ -0,0 +1,61 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.content.Context;
+
+/**
+ * One way to keep the app running in background. The plugin tries the
+ * strategies in order and switches to the next one if a strategy fails.
+ */
+interface KeepAliveStrategy {
+
+    /**
+     * The name of the strategy as used in JS.
+     */
+    String getName();
+
+    /**
+     * If the strategy is available on this device.
+     *
+     * @param context The context of the app.
+     */
+    boolean isSupported(Context context);
+
+    /**
+     * Start keeping the app alive, or arm the next wakeup for strategies
+     * which wake the app up periodically.
+     *
+     * @param context  The context of the app.
+     * @param interval The time between two wakeups.
+     * @return false if the strategy could not be started.
+     */
+    boolean start(Context context, long interval);
+
+    /**
+     * Stop keeping the app alive.
+     *
+     * @param context The context of the app.
+     */
+    void stop(Context context);
+
+}
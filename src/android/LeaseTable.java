@@ -0,0 +1,247 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named leases which stay live until closed or until their timeout expired.
+ * The lifetime of each lease is accounted. Once the table holds too many
+ * leases, the least recently opened closed ones get folded into one
+ * aggregate, so that unique names like task IDs don't let it grow forever.
+ * The table is not thread-safe, its owner guards it with its own lock.
+ */
+final class LeaseTable {
+
+    // Name of the aggregate of the evicted leases
+    static final String EVICTED = "*";
+
+    // Max number of leases kept by name
+    private static final int MAX_LEASES = 32;
+
+    /**
+     * Called when a lease timed out.
+     */
+    interface Expiry {
+        /**
+         * The lease timed out and should be closed by the owner.
+         *
+         * @param name The name of the lease.
+         */
+        void onExpired(String name);
+    }
+
+    // Runs the expiry timers
+    private final Handler handler;
+
+    // Called when a lease timed out
+    private final Expiry expiry;
+
+    // Leases by name, least recently opened first
+    private final Map<String, Lease> leases = new LinkedHashMap<String, Lease>();
+
+    // Totals of the evicted leases
+    private final Lease evicted = new Lease(EVICTED);
+
+    // Number of live leases
+    private int live = 0;
+
+    /**
+     * Initialize the table.
+     *
+     * @param handler The handler to run the expiry timers.
+     * @param expiry  Called on the handler when a lease timed out.
+     */
+    LeaseTable(Handler handler, Expiry expiry) {
+        this.handler = handler;
+        this.expiry  = expiry;
+    }
+
+    /**
+     * Open or renew the named lease.
+     *
+     * @param name    The name of the lease.
+     * @param timeout Time after the lease expires or 0 to keep it
+     *                until closed.
+     * @return true if it's the first live lease.
+     */
+    boolean open(String name, long timeout) {
+        Lease lease   = leases.remove(name);
+        boolean first = false;
+
+        if (lease == null) {
+            lease = new Lease(name);
+        }
+
+        leases.put(name, lease);
+        evict();
+
+        handler.removeCallbacks(lease);
+
+        if (!lease.live) {
+            lease.live     = true;
+            lease.openedAt = SystemClock.elapsedRealtime();
+            lease.count++;
+
+            first = live++ == 0;
+        }
+
+        if (timeout > 0) {
+            handler.postDelayed(lease, timeout);
+        }
+
+        return first;
+    }
+
+    /**
+     * Close the named lease.
+     *
+     * @param name The name of the lease.
+     * @return true if the lease was live.
+     */
+    boolean close(String name) {
+        Lease lease = leases.get(name);
+
+        if (lease == null || !lease.live)
+            return false;
+
+        handler.removeCallbacks(lease);
+
+        long lifetime = SystemClock.elapsedRealtime() - lease.openedAt;
+
+        lease.live   = false;
+        lease.total += lifetime;
+        lease.last   = lifetime;
+        lease.max    = Math.max(lease.max, lifetime);
+
+        live--;
+
+        return true;
+    }
+
+    /**
+     * If the named lease is live.
+     *
+     * @param name The name of the lease.
+     */
+    boolean isLive(String name) {
+        Lease lease = leases.get(name);
+
+        return lease != null && lease.live;
+    }
+
+    /**
+     * The number of live leases.
+     */
+    int getLive() {
+        return live;
+    }
+
+    /**
+     * The leases kept by name.
+     */
+    Collection<Lease> getLeases() {
+        return leases.values();
+    }
+
+    /**
+     * The totals of the evicted leases or null if none got evicted.
+     */
+    Lease getEvicted() {
+        return evicted.count > 0 ? evicted : null;
+    }
+
+    /**
+     * Fold the least recently opened closed leases into the aggregate
+     * while the table holds too many. Live leases are kept.
+     */
+    private void evict() {
+        Iterator<Lease> it = leases.values().iterator();
+
+        while (leases.size() > MAX_LEASES && it.hasNext()) {
+            Lease lease = it.next();
+
+            if (lease.live)
+                continue;
+
+            evicted.count += lease.count;
+            evicted.total += lease.total;
+            evicted.last   = lease.last;
+            evicted.max    = Math.max(evicted.max, lease.max);
+            evicted.held  += lease.held;
+
+            it.remove();
+        }
+    }
+
+    /**
+     * Named lease which expires when run.
+     */
+    final class Lease implements Runnable {
+
+        // The name of the lease
+        final String name;
+
+        // Flag indicates if the lease is live
+        boolean live = false;
+
+        // Time when the lease has been opened
+        long openedAt = 0;
+
+        // Number of times the lease has been opened
+        int count = 0;
+
+        // Total, last and max lifetime of the closed leases
+        long total = 0;
+        long last  = 0;
+        long max   = 0;
+
+        // Time the owner accounted to the lease, like the time a lock
+        // has been held for it
+        long held = 0;
+
+        Lease(String name) {
+            this.name = name;
+        }
+
+        /**
+         * The total lifetime including the one of the live lease.
+         *
+         * @param now The current elapsed realtime.
+         */
+        long getTotal(long now) {
+            return total + (live ? now - openedAt : 0);
+        }
+
+        @Override
+        public void run() {
+            expiry.onExpired(name);
+        }
+    }
+
+}
@@ -0,0 +1,364 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Printer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+
+/**
+ * Opt-in watchdog of the main looper. Each dispatched message is timed via
+ * the message logging of the looper, and the stack of the main thread gets
+ * sampled while a message runs longer than the threshold. The time from
+ * startForegroundService to startForeground is tracked against the deadline
+ * after which the system raises an ANR. Warnings go to logcat and JS.
+ */
+final class MainThreadWatchdog implements Printer {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Default time after a message counts as a stall
+    static final long DEFAULT_THRESHOLD = 100;
+
+    // Time the system grants to call startForeground
+    private static final long FOREGROUND_DEADLINE = 5000;
+
+    // Time to call startForeground after which to warn
+    private static final long FOREGROUND_WARNING = FOREGROUND_DEADLINE / 2;
+
+    // Max number of stack samples per warning
+    private static final int MAX_SAMPLES = 5;
+
+    // Max number of frames per stack sample
+    private static final int MAX_FRAMES = 16;
+
+    // Number of kept warnings
+    private static final int HISTORY = 16;
+
+    // The shared watchdog
+    private static final MainThreadWatchdog instance = new MainThreadWatchdog();
+
+    // Samples the stacks and checks the deadline
+    private final Handler handler = Scheduler.getHandler();
+
+    // The thread of the main looper
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+
+    // The latest warnings, oldest first
+    private final ArrayDeque<JSONObject> history = new ArrayDeque<JSONObject>();
+
+    // Stack samples of the running message
+    private JSONArray samples = new JSONArray();
+
+    // Flag indicates if the watchdog is on
+    private volatile boolean isEnabled = false;
+
+    // Time after a message counts as a stall
+    private long threshold = DEFAULT_THRESHOLD;
+
+    // The running message or null
+    private String message;
+
+    // Time the running message has been dispatched
+    private long dispatchedAt;
+
+    // Number of timed messages
+    private long dispatched = 0;
+
+    // Number of stalled messages
+    private long stalls = 0;
+
+    // Longest stall
+    private long maxStall = 0;
+
+    // Time startForegroundService has been called or -1
+    private long startRequestedAt = -1;
+
+    // Stats of the time to startForeground
+    private long foregroundCount = 0;
+    private long foregroundLate  = 0;
+    private long foregroundLast  = 0;
+    private long foregroundMax   = 0;
+
+    // Samples the stack of the main thread while a message stalls
+    private final Runnable sample = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MainThreadWatchdog.this) {
+                if (message == null)
+                    return;
+
+                samples.put(stackOf(mainThread));
+
+                if (samples.length() < MAX_SAMPLES) {
+                    handler.postDelayed(this, threshold);
+                }
+            }
+        }
+    };
+
+    // Warns while startForeground is still pending
+    private final Runnable deadline = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MainThreadWatchdog.this) {
+                if (startRequestedAt < 0)
+                    return;
+
+                long elapsed = SystemClock.uptimeMillis() - startRequestedAt;
+                String text  = elapsed >= FOREGROUND_DEADLINE
+                        ? "startForeground missed the deadline"
+                        : "startForeground still pending";
+
+                warn("foreground", text, elapsed,
+                        new JSONArray().put(stackOf(mainThread)));
+
+                if (elapsed < FOREGROUND_DEADLINE) {
+                    handler.postDelayed(this, FOREGROUND_DEADLINE - elapsed);
+                }
+            }
+        }
+    };
+
+    private MainThreadWatchdog() {}
+
+    /**
+     * The shared watchdog.
+     */
+    static MainThreadWatchdog getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start timing the messages of the main looper. Replaces any other
+     * message logging of the main looper.
+     *
+     * @param threshold Time after a message counts as a stall or 0 for
+     *                  the default.
+     */
+    synchronized void start(long threshold) {
+        this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+
+        if (isEnabled)
+            return;
+
+        isEnabled = true;
+        Looper.getMainLooper().setMessageLogging(this);
+    }
+
+    /**
+     * Stop timing the messages.
+     */
+    synchronized void stop() {
+        if (!isEnabled)
+            return;
+
+        isEnabled = false;
+        Looper.getMainLooper().setMessageLogging(null);
+
+        handler.removeCallbacks(sample);
+        handler.removeCallbacks(deadline);
+
+        message          = null;
+        startRequestedAt = -1;
+    }
+
+    /**
+     * Called by the plugin right before startForegroundService.
+     */
+    synchronized void onStartRequested() {
+        if (!isEnabled)
+            return;
+
+        startRequestedAt = SystemClock.uptimeMillis();
+
+        handler.removeCallbacks(deadline);
+        handler.postDelayed(deadline, FOREGROUND_WARNING);
+    }
+
+    /**
+     * Called by the service once it called startForeground.
+     */
+    synchronized void onStartForeground() {
+        if (startRequestedAt < 0)
+            return;
+
+        long elapsed = SystemClock.uptimeMillis() - startRequestedAt;
+
+        startRequestedAt = -1;
+        handler.removeCallbacks(deadline);
+
+        foregroundCount++;
+        foregroundLast = elapsed;
+        foregroundMax  = Math.max(foregroundMax, elapsed);
+
+        if (elapsed < FOREGROUND_WARNING)
+            return;
+
+        foregroundLate++;
+        Metrics.increment(Metrics.LATE_START_FOREGROUND);
+        warn("foreground", "startForeground called late", elapsed, new JSONArray());
+    }
+
+    /**
+     * Receives the lines the main looper logs before and after each
+     * message.
+     *
+     * @param line The logged line.
+     */
+    @Override
+    public void println(String line) {
+        if (line.startsWith(">")) {
+            onDispatch(line);
+        } else if (line.startsWith("<")) {
+            onFinished();
+        }
+    }
+
+    /**
+     * The settings, the stats and the latest warnings.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json       = new JSONObject();
+        JSONObject foreground = new JSONObject();
+
+        foreground.put("count", foregroundCount);
+        foreground.put("late", foregroundLate);
+        foreground.put("last", foregroundLast);
+        foreground.put("max", foregroundMax);
+        foreground.put("pending", startRequestedAt >= 0);
+
+        json.put("enabled", isEnabled);
+        json.put("threshold", threshold);
+        json.put("dispatched", dispatched);
+        json.put("stalls", stalls);
+        json.put("maxStall", maxStall);
+        json.put("foreground", foreground);
+        json.put("warnings", new JSONArray(history));
+
+        return json;
+    }
+
+    /**
+     * Start timing the message.
+     *
+     * @param line The logged line which names the target and callback.
+     */
+    private synchronized void onDispatch(String line) {
+        int start = line.indexOf(" to ");
+
+        message      = start >= 0 ? line.substring(start + 4) : line;
+        dispatchedAt = SystemClock.uptimeMillis();
+        samples      = new JSONArray();
+
+        dispatched++;
+        handler.postDelayed(sample, threshold);
+    }
+
+    /**
+     * Stop timing the message and warn if it stalled.
+     */
+    private synchronized void onFinished() {
+        if (message == null)
+            return;
+
+        long duration = SystemClock.uptimeMillis() - dispatchedAt;
+
+        handler.removeCallbacks(sample);
+
+        if (duration >= threshold) {
+            stalls++;
+            maxStall = Math.max(maxStall, duration);
+            Metrics.increment(Metrics.MAIN_THREAD_STALLS);
+            warn("stall", message, duration, samples);
+        }
+
+        message = null;
+    }
+
+    /**
+     * Log the warning, keep it and send it to JS.
+     *
+     * @param type     The type of the warning.
+     * @param text     What has been slow.
+     * @param duration The time in ms.
+     * @param stacks   The stack samples of the main thread.
+     */
+    private void warn(String type, String text, long duration, JSONArray stacks) {
+        JSONObject warning = new JSONObject();
+
+        try {
+            warning.put("type", type);
+            warning.put("message", text);
+            warning.put("duration", duration);
+            warning.put("samples", stacks);
+            warning.put("time", System.currentTimeMillis());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        StringBuilder log = new StringBuilder("Main thread ")
+                .append(type).append(' ').append(duration).append(" ms: ").append(text);
+
+        JSONArray first = stacks.optJSONArray(0);
+
+        for (int i = 0; first != null && i < first.length(); i++) {
+            log.append("\n    at ").append(first.optString(i));
+        }
+
+        Log.w(TAG, log.toString());
+        TraceLog.instant(TraceLog.LIFECYCLE, type, text);
+
+        history.add(warning);
+
+        if (history.size() > HISTORY) {
+            history.poll();
+        }
+
+        EventChannel.getInstance().send("stall", warning);
+    }
+
+    /**
+     * The topmost frames of the thread.
+     *
+     * @param thread The thread to sample.
+     */
+    private static JSONArray stackOf(Thread thread) {
+        StackTraceElement[] frames = thread.getStackTrace();
+        JSONArray stack            = new JSONArray();
+
+        for (int i = 0; i < frames.length && i < MAX_FRAMES; i++) {
+            stack.put(frames[i].toString());
+        }
+
+        return stack;
+    }
+
+}
@@ -0,0 +1,408 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.webkit.WebView;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaWebView;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Reacts to memory pressure while the app is in background. Each trim level
+ * is forwarded to JS as 'memory' event, the web view caches get released and
+ * rendering gets paused at the configured levels. The heap and PSS before
+ * and some time after are recorded to tune the levels.
+ */
+final class MemoryManager implements ComponentCallbacks2 {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Time after the trim to measure the memory again
+    private static final long SETTLE_DELAY = 1000;
+
+    // Time in which the same level is delivered by several components
+    private static final long DUPLICATE_WINDOW = 1000;
+
+    // Number of kept records
+    private static final int HISTORY = 16;
+
+    // Level to never take an action
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    // Trim levels in ascending order
+    private static final int[] LEVELS = {
+            TRIM_MEMORY_RUNNING_MODERATE, TRIM_MEMORY_RUNNING_LOW,
+            TRIM_MEMORY_RUNNING_CRITICAL, TRIM_MEMORY_UI_HIDDEN,
+            TRIM_MEMORY_BACKGROUND, TRIM_MEMORY_MODERATE, TRIM_MEMORY_COMPLETE
+    };
+
+    // Names of the trim levels
+    private static final String[] NAMES = {
+            "running_moderate", "running_low", "running_critical",
+            "ui_hidden", "background", "moderate", "complete"
+    };
+
+    // The shared instance
+    private static final MemoryManager instance = new MemoryManager();
+
+    // Runs the measurements
+    private final Handler handler = Scheduler.getHandler();
+
+    // The latest records, oldest first
+    private final ArrayDeque<JSONObject> history = new ArrayDeque<JSONObject>();
+
+    // Weak reference to the cordova interface passed by the plugin
+    private WeakReference<CordovaInterface> cordova;
+
+    // Weak reference to the cordova web view passed by the plugin
+    private WeakReference<CordovaWebView> webView;
+
+    // Level from which on the web view caches get released
+    private int clearCacheLevel = NEVER;
+
+    // Level from which on rendering of the web view gets paused
+    private int pauseRenderingLevel = NEVER;
+
+    // Flag indicates if the app is in background
+    private boolean inBackground = false;
+
+    // Flag indicates if rendering of the web view is paused
+    private boolean isRenderingPaused = false;
+
+    // Last delivered level and when
+    private int lastLevel = -1;
+    private long lastTrimAt = 0;
+
+    // Releases the caches of the web view
+    private final Runnable clearCache = new Runnable() {
+        @Override
+        public void run() {
+            WebView view = getWebView();
+
+            if (view != null) {
+                view.clearCache(false);
+            }
+        }
+    };
+
+    // Pauses rendering of the web view
+    private final Runnable pauseRendering = new Runnable() {
+        @Override
+        public void run() {
+            WebView view = getWebView();
+
+            if (view != null) {
+                view.onPause();
+            }
+        }
+    };
+
+    // Resumes rendering of the web view
+    private final Runnable resumeRendering = new Runnable() {
+        @Override
+        public void run() {
+            WebView view = getWebView();
+
+            if (view != null) {
+                view.onResume();
+            }
+        }
+    };
+
+    private MemoryManager() {}
+
+    /**
+     * The shared instance.
+     */
+    static MemoryManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set the web view to release and pause.
+     *
+     * @param cordova The cordova interface.
+     * @param webView The cordova web view.
+     */
+    synchronized void attach(CordovaInterface cordova, CordovaWebView webView) {
+        this.cordova = new WeakReference<CordovaInterface>(cordova);
+        this.webView = new WeakReference<CordovaWebView>(webView);
+    }
+
+    /**
+     * Set the levels from which on the actions are taken.
+     *
+     * @param json A JSON dict with the level names for clearCache and
+     *             pauseRendering, omit a level to never take the action.
+     */
+    synchronized void configure(JSONObject json) {
+        clearCacheLevel     = parseLevel(json.optString("clearCache", null));
+        pauseRenderingLevel = parseLevel(json.optString("pauseRendering", null));
+    }
+
+    /**
+     * Called when the app went to background.
+     */
+    synchronized void onPause() {
+        inBackground = true;
+    }
+
+    /**
+     * Called when the app came back to foreground.
+     */
+    synchronized void onResume() {
+        inBackground = false;
+
+        if (isRenderingPaused) {
+            isRenderingPaused = false;
+            runOnUiThread(resumeRendering);
+        }
+    }
+
+    /**
+     * The latest records of trim levels with the memory before and after.
+     */
+    synchronized JSONArray toJSON() {
+        return new JSONArray(history);
+    }
+
+    /**
+     * Called by the system, the plugin and the service.
+     *
+     * @param level The trim level.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        long now = SystemClock.elapsedRealtime();
+
+        synchronized (this) {
+            if (level == lastLevel && now - lastTrimAt < DUPLICATE_WINDOW)
+                return;
+
+            lastLevel  = level;
+            lastTrimAt = now;
+        }
+
+        Metrics.increment(Metrics.TRIM_EVENTS);
+
+        handler.post(new Trim(level));
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // not of interest
+    }
+
+    /**
+     * Handles one trim level off the main thread.
+     */
+    private final class Trim implements Runnable {
+
+        // The trim level
+        final int level;
+
+        // The record of the level, not changed once it has been sent
+        final JSONObject record = new JSONObject();
+
+        // Flag indicates if the memory after has been measured
+        boolean settled = false;
+
+        Trim(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (settled) {
+                    finish();
+                } else {
+                    start();
+                }
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Measure, take the actions and notify JS.
+         */
+        private void start() throws JSONException {
+            JSONArray actions = new JSONArray();
+
+            record.put("level", level);
+            record.put("name", nameOf(level));
+            record.put("time", System.currentTimeMillis());
+            record.put("before", measure());
+
+            synchronized (MemoryManager.this) {
+                if (inBackground && level >= clearCacheLevel) {
+                    runOnUiThread(clearCache);
+                    actions.put("clearCache");
+                }
+
+                if (inBackground && level >= pauseRenderingLevel && !isRenderingPaused) {
+                    isRenderingPaused = true;
+                    runOnUiThread(pauseRendering);
+                    actions.put("pauseRendering");
+                }
+
+                record.put("actions", actions);
+                history.add(record);
+
+                if (history.size() > HISTORY) {
+                    history.poll();
+                }
+            }
+
+            Log.d(TAG, "Trim memory " + nameOf(level) + ", actions " + actions);
+
+            EventChannel.getInstance().send("memory", record);
+
+            settled = true;
+            handler.postDelayed(this, SETTLE_DELAY);
+        }
+
+        /**
+         * Measure the memory after and replace the record within the history
+         * by a copy which includes it. The sent record may be serialized by
+         * other threads, thus it stays as it is.
+         */
+        private void finish() throws JSONException {
+            JSONObject settledRecord = new JSONObject();
+            Iterator<String> keys    = record.keys();
+
+            while (keys.hasNext()) {
+                String key = keys.next();
+                settledRecord.put(key, record.opt(key));
+            }
+
+            settledRecord.put("after", measure());
+
+            synchronized (MemoryManager.this) {
+                for (int i = history.size(); i > 0; i--) {
+                    JSONObject item = history.poll();
+                    history.add(item == record ? settledRecord : item);
+                }
+            }
+        }
+    }
+
+    /**
+     * The memory used by the app in KB.
+     */
+    private static JSONObject measure() throws JSONException {
+        JSONObject json = new JSONObject();
+        Runtime runtime = Runtime.getRuntime();
+
+        json.put("heap", (runtime.totalMemory() - runtime.freeMemory()) / 1024);
+        json.put("nativeHeap", Debug.getNativeHeapAllocatedSize() / 1024);
+        json.put("pss", Debug.getPss());
+
+        return json;
+    }
+
+    /**
+     * Parse the name of the trim level.
+     *
+     * @param name The name like "running_low" or "background".
+     * @return NEVER if not set or unknown.
+     */
+    private static int parseLevel(String name) {
+        if (name == null)
+            return NEVER;
+
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name.toLowerCase(Locale.ROOT)))
+                return LEVELS[i];
+        }
+
+        Log.w(TAG, "Unknown trim level " + name);
+
+        return NEVER;
+    }
+
+    /**
+     * The name of the trim level or the closest lower one.
+     *
+     * @param level The trim level.
+     */
+    private static String nameOf(int level) {
+        String name = "unknown";
+
+        for (int i = 0; i < LEVELS.length && level >= LEVELS[i]; i++) {
+            name = NAMES[i];
+        }
+
+        return name;
+    }
+
+    /**
+     * The system web view or null if not available or another engine.
+     */
+    private synchronized WebView getWebView() {
+        CordovaWebView cordovaWebView = webView != null ? webView.get() : null;
+
+        if (cordovaWebView == null)
+            return null;
+
+        View view = cordovaWebView.getEngine().getView();
+
+        return view instanceof WebView ? (WebView) view : null;
+    }
+
+    /**
+     * Run the task on the main thread of the app.
+     *
+     * @param task The task to run.
+     */
+    private synchronized void runOnUiThread(Runnable task) {
+        CordovaInterface cordovaInterface = cordova != null ? cordova.get() : null;
+        Activity app = cordovaInterface != null ? cordovaInterface.getActivity() : null;
+
+        if (app != null) {
+            app.runOnUiThread(task);
+        }
+    }
+
+}
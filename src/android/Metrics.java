@@ -0,0 +1,297 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms about what the plugin costs at runtime.
+ * Recording only touches preallocated primitive arrays so that it can stay
+ * turned on in release builds.
+ */
+final class Metrics {
+
+    // Counters
+    static final int SERVICE_STARTS         = 0;
+    static final int SERVICE_STOPS          = 1;
+    static final int STOP_RETRIES           = 2;
+    static final int START_FAILURES         = 3;
+    static final int NOTIFICATION_REBUILDS  = 4;
+    static final int NOTIFICATION_POSTS     = 5;
+    static final int EVENTS_FIRED           = 6;
+    static final int TASKS_REJECTED         = 7;
+    static final int WAKE_LOCK_MILLIS       = 8;
+    static final int BACKGROUND_MILLIS      = 9;
+    static final int LAST_START_FOREGROUND  = 10;
+    static final int DEBOUNCED_TRANSITIONS  = 11;
+    static final int STICKY_RESTARTS        = 12;
+    static final int TRIM_EVENTS            = 13;
+    static final int IDLE_STOPS             = 14;
+    static final int NOTIFICATION_COALESCED = 15;
+    static final int NOTIFICATION_DROPPED   = 16;
+    static final int FALLBACK_WAKEUPS       = 17;
+    static final int STRATEGY_SWITCHES      = 18;
+    static final int MAIN_THREAD_STALLS     = 19;
+    static final int LATE_START_FOREGROUND  = 20;
+    static final int BATCHES                = 21;
+    static final int BATCHED_COMMANDS       = 22;
+
+    // Names of the counters
+    private static final String[] COUNTERS = {
+            "serviceStarts", "serviceStops", "stopRetries", "startFailures",
+            "notificationRebuilds", "notificationPosts", "eventsFired",
+            "tasksRejected", "wakeLockMillis", "backgroundMillis",
+            "lastPauseToStartForeground", "debouncedTransitions",
+            "stickyRestarts", "trimMemoryEvents", "idleStops",
+            "notificationsCoalesced", "notificationsDropped",
+            "fallbackWakeups", "strategySwitches", "mainThreadStalls",
+            "lateStartForeground", "batches", "batchedCommands"
+    };
+
+    // Histograms
+    static final int START_FOREGROUND = 0;
+    static final int TASK_WAIT        = 1;
+    static final int TASK_RUN         = 2;
+    static final int SETTINGS_LOAD    = 3;
+
+    // Names of the histograms
+    private static final String[] HISTOGRAMS = {
+            "pauseToStartForeground", "taskWait", "taskRun", "settingsLoad"
+    };
+
+    // Upper bounds in ms of the histogram buckets, the last one is open
+    private static final long[] BUCKETS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    // Slots per histogram: one per bucket, the open bucket, count, sum, max
+    private static final int SLOTS = BUCKETS.length + 4;
+
+    // Values of the counters
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+
+    // Values of the histograms
+    private static final AtomicLongArray histograms = new AtomicLongArray(HISTOGRAMS.length * SLOTS);
+
+    // Time when the app went to background, 0 if in foreground
+    private static volatile long pausedAt = 0;
+
+    // Flag indicates if the service has not been put into foreground since
+    private static volatile boolean startPending = false;
+
+    // Interval of the periodic stats event, 0 if disabled
+    private static long pushInterval = 0;
+
+    // Fires the periodic stats event
+    private static final Runnable push = new Runnable() {
+        @Override
+        public void run() {
+            EventChannel.getInstance().send("stats", toJSON());
+            schedulePush();
+        }
+    };
+
+    private Metrics() {}
+
+    /**
+     * Increment the counter by one.
+     *
+     * @param counter The ID of the counter.
+     */
+    static void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    /**
+     * Add the value to the counter.
+     *
+     * @param counter The ID of the counter.
+     * @param value   The value to add.
+     */
+    static void add(int counter, long value) {
+        counters.addAndGet(counter, value);
+    }
+
+    /**
+     * Record the value in ms in the histogram.
+     *
+     * @param histogram The ID of the histogram.
+     * @param millis    The value to record.
+     */
+    static void record(int histogram, long millis) {
+        int offset = histogram * SLOTS;
+        int bucket = 0;
+
+        while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+            bucket++;
+        }
+
+        histograms.incrementAndGet(offset + bucket);
+        histograms.incrementAndGet(offset + BUCKETS.length + 1);
+        histograms.addAndGet(offset + BUCKETS.length + 2, millis);
+
+        int maxSlot = offset + BUCKETS.length + 3;
+        long max    = histograms.get(maxSlot);
+
+        while (millis > max && !histograms.compareAndSet(maxSlot, max, millis)) {
+            max = histograms.get(maxSlot);
+        }
+    }
+
+    /**
+     * Called when the app went to background.
+     */
+    static void onPause() {
+        pausedAt     = SystemClock.elapsedRealtime();
+        startPending = true;
+    }
+
+    /**
+     * Called when the app came back to foreground.
+     */
+    static void onResume() {
+        long since = pausedAt;
+
+        pausedAt = 0;
+
+        if (since > 0) {
+            add(BACKGROUND_MILLIS, SystemClock.elapsedRealtime() - since);
+        }
+    }
+
+    /**
+     * Called when the service has been put into foreground state.
+     *
+     * @return The time in ms since the app went to background or -1 if
+     *         already recorded for this pause.
+     */
+    static long onStartForeground() {
+        long since = pausedAt;
+
+        if (since == 0 || !startPending)
+            return -1;
+
+        startPending = false;
+
+        long latency = SystemClock.elapsedRealtime() - since;
+
+        record(START_FOREGROUND, latency);
+        counters.set(LAST_START_FOREGROUND, latency);
+
+        return latency;
+    }
+
+    /**
+     * Fire the stats event periodically.
+     *
+     * @param interval The interval in ms or 0 to stop.
+     */
+    static synchronized void setPushInterval(long interval) {
+        pushInterval = Math.max(0, interval);
+        schedulePush();
+    }
+
+    /**
+     * Schedule the next stats event.
+     */
+    private static synchronized void schedulePush() {
+        Handler handler = Scheduler.getHandler();
+
+        handler.removeCallbacks(push);
+
+        if (pushInterval > 0) {
+            handler.postDelayed(push, pushInterval);
+        }
+    }
+
+    /**
+     * Snapshot of all counters and histograms.
+     */
+    static JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        try {
+            for (int i = 0; i < COUNTERS.length; i++) {
+                json.put(COUNTERS[i], counters.get(i));
+            }
+
+            long since = pausedAt;
+
+            if (since > 0) {
+                json.put("backgroundMillis", counters.get(BACKGROUND_MILLIS)
+                        + SystemClock.elapsedRealtime() - since);
+            }
+
+            for (int i = 0; i < HISTOGRAMS.length; i++) {
+                json.put(HISTOGRAMS[i], histogramToJSON(i));
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        return json;
+    }
+
+    /**
+     * Snapshot of the histogram.
+     *
+     * @param histogram The ID of the histogram.
+     */
+    private static JSONObject histogramToJSON(int histogram) throws JSONException {
+        JSONObject json   = new JSONObject();
+        JSONArray buckets = new JSONArray();
+        int offset        = histogram * SLOTS;
+
+        for (int i = 0; i <= BUCKETS.length; i++) {
+            buckets.put(histograms.get(offset + i));
+        }
+
+        json.put("bounds", boundsToJSON());
+        json.put("buckets", buckets);
+        json.put("count", histograms.get(offset + BUCKETS.length + 1));
+        json.put("sum", histograms.get(offset + BUCKETS.length + 2));
+        json.put("max", histograms.get(offset + BUCKETS.length + 3));
+
+        return json;
+    }
+
+    /**
+     * The upper bounds of the buckets.
+     */
+    private static JSONArray boundsToJSON() {
+        JSONArray bounds = new JSONArray();
+
+        for (long bound : BUCKETS) {
+            bounds.put(bound);
+        }
+
+        return bounds;
+    }
+
+}
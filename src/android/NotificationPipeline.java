@@ -0,0 +1,219 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.NotificationManager;
+import android.app.Service;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import static android.content.Context.NOTIFICATION_SERVICE;
+import static de.appplant.cordova.plugin.background.ForegroundService.NOTIFICATION_ID;
+
+/**
+ * Posts the updates of the notification at a limited rate, as the system
+ * drops updates beyond a few per second. Updates received in between are
+ * coalesced so that only the latest one gets posted, and the latest one is
+ * always posted once the interval has passed.
+ */
+final class NotificationPipeline {
+
+    // Default max number of posted updates per second
+    static final int DEFAULT_RATE = 4;
+
+    // Max number of posted updates per second, shared by all instances
+    private static volatile int maxRate = DEFAULT_RATE;
+
+    // The service which owns the notification
+    private final Service service;
+
+    // Builds the notification
+    private final NotificationRenderer renderer;
+
+    // Posts the updates
+    private final NotificationManager manager;
+
+    // Runs the delayed posts
+    private final Handler handler = Scheduler.getHandler();
+
+    // Posts the pending update
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Latest settings not yet posted or null
+    private Settings pendingSettings;
+
+    // Flag indicates if a progress update is pending
+    private boolean pendingProgress = false;
+
+    // Latest progress
+    private int progressMax;
+    private int progressValue;
+    private boolean progressIndeterminate;
+
+    // Flag indicates if the notification has been removed by silent settings
+    private boolean isSilent = false;
+
+    // Flag indicates if a post has been scheduled
+    private boolean flushScheduled = false;
+
+    // Flag indicates if the service is going away
+    private boolean isClosed = false;
+
+    // Time of the last post
+    private long postedAt = 0;
+
+    /**
+     * Initialize the pipeline.
+     *
+     * @param service  The service which owns the notification.
+     * @param renderer The renderer of the notification.
+     */
+    NotificationPipeline(Service service, NotificationRenderer renderer) {
+        this.service  = service;
+        this.renderer = renderer;
+        this.manager  = (NotificationManager) service.getSystemService(NOTIFICATION_SERVICE);
+    }
+
+    /**
+     * Set the max number of posted updates per second.
+     *
+     * @param rate The number of updates per second.
+     */
+    static void setMaxRate(int rate) {
+        maxRate = Math.max(1, rate);
+    }
+
+    /**
+     * Post the settings with the next slot.
+     *
+     * @param settings The config settings
+     */
+    synchronized void submit(Settings settings) {
+        if (isClosed) {
+            Metrics.increment(Metrics.NOTIFICATION_DROPPED);
+            return;
+        }
+
+        if (pendingSettings != null) {
+            Metrics.increment(Metrics.NOTIFICATION_COALESCED);
+        }
+
+        pendingSettings = settings;
+        schedule();
+    }
+
+    /**
+     * Post the progress with the next slot.
+     *
+     * @param max           The max value or 0 to remove the bar.
+     * @param progress      The current value.
+     * @param indeterminate Flag indicates if the progress is unknown.
+     */
+    synchronized void submitProgress(int max, int progress, boolean indeterminate) {
+        if (isClosed) {
+            Metrics.increment(Metrics.NOTIFICATION_DROPPED);
+            return;
+        }
+
+        if (pendingProgress) {
+            Metrics.increment(Metrics.NOTIFICATION_COALESCED);
+        }
+
+        pendingProgress       = true;
+        progressMax           = max;
+        progressValue         = progress;
+        progressIndeterminate = indeterminate;
+
+        schedule();
+    }
+
+    /**
+     * Stop posting, called when the service gets destroyed. Pending
+     * updates are dropped as the notification goes away.
+     */
+    synchronized void close() {
+        isClosed = true;
+        handler.removeCallbacks(flush);
+
+        if (pendingSettings != null || pendingProgress) {
+            Metrics.increment(Metrics.NOTIFICATION_DROPPED);
+        }
+
+        pendingSettings = null;
+        pendingProgress = false;
+    }
+
+    /**
+     * Schedule the post for the next free slot.
+     */
+    private void schedule() {
+        if (flushScheduled)
+            return;
+
+        long interval = 1000 / maxRate;
+        long delay    = postedAt + interval - SystemClock.elapsedRealtime();
+
+        flushScheduled = true;
+        handler.postDelayed(flush, Math.max(0, delay));
+    }
+
+    /**
+     * Render and post the pending updates.
+     */
+    private synchronized void flush() {
+        Settings settings = pendingSettings;
+        boolean changed   = false;
+
+        flushScheduled  = false;
+        pendingSettings = null;
+
+        if (isClosed)
+            return;
+
+        if (settings != null && settings.silent) {
+            isSilent = true;
+            service.stopForeground(true);
+            renderer.invalidate();
+        } else if (settings != null) {
+            isSilent = false;
+            changed  = renderer.update(settings);
+        }
+
+        if (pendingProgress) {
+            pendingProgress = false;
+            changed |= renderer.setProgress(progressMax, progressValue, progressIndeterminate);
+        }
+
+        if (!changed || isSilent)
+            return;
+
+        manager.notify(NOTIFICATION_ID, renderer.getNotification());
+        postedAt = SystemClock.elapsedRealtime();
+        Metrics.increment(Metrics.NOTIFICATION_POSTS);
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.annotation.TargetApi;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+
+import static de.appplant.cordova.plugin.background.ForegroundService.NOTIFICATION_CHANNEL_ID;
+
+/**
+ * Builds the notification of the foreground service and keeps the last
+ * rendered template around. Incoming settings are diffed against that
+ * template so that the builder, style and content intent can be reused and
+ * the notification only needs to be re-posted if something visible changed.
+ */
+class NotificationRenderer {
+
+    // The shared instance
+    private static NotificationRenderer instance;
+
+    // Application context used to build the notification
+    private final Context context;
+
+    // Cached icon and intent lookups
+    private final ResourceCache resources;
+
+    // Reused builder of the notification
+    private NotificationCompat.Builder builder;
+
+    // Reused style for multi line texts
+    private NotificationCompat.BigTextStyle bigTextStyle;
+
+    // Flag indicates if the notification channel has been registered
+    private boolean channelCreated = false;
+
+    // Last rendered notification
+    private Notification notification;
+
+    // Settings of the last rendered notification
+    private Settings rendered;
+
+    // Progress shown by the notification, max 0 if none
+    private int progressMax = 0;
+    private int progressValue = 0;
+    private boolean progressIndeterminate = false;
+
+    /**
+     * Initialize the renderer.
+     *
+     * @param context The context used to build the notification.
+     */
+    private NotificationRenderer(Context context) {
+        this.context   = context.getApplicationContext();
+        this.resources = ResourceCache.getInstance(context);
+    }
+
+    /**
+     * The shared renderer, so that the plugin can prepare the notification
+     * before the service gets started.
+     *
+     * @param context Any context of the app.
+     */
+    static synchronized NotificationRenderer getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationRenderer(context);
+        }
+
+        return instance;
+    }
+
+    /**
+     * The notification for the given settings. Returns the last rendered
+     * notification if nothing visible has changed.
+     *
+     * @param settings The config settings
+     */
+    synchronized Notification render(Settings settings) {
+        update(settings);
+        return notification;
+    }
+
+    /**
+     * Render the notification for the given settings.
+     *
+     * @param settings The config settings
+     * @return true if the notification has changed and needs to be re-posted.
+     */
+    synchronized boolean update(Settings settings) {
+        Settings last = rendered;
+
+        if (notification != null && settings.hasSameNotification(last))
+            return false;
+
+        NotificationCompat.Builder builder = getBuilder();
+
+        builder.setContentTitle(settings.title).setContentText(settings.text);
+
+        if (last == null || !settings.icon.equals(last.icon)) {
+            builder.setSmallIcon(resources.getIconResId(settings.icon));
+        }
+
+        if (last == null || settings.hidden != last.hidden) {
+            builder.setPriority(settings.hidden ? Notification.PRIORITY_MIN : Notification.PRIORITY_DEFAULT);
+        }
+
+        if (settings.bigText) {
+            builder.setStyle(getBigTextStyle().bigText(settings.text));
+        } else if (last == null || last.bigText) {
+            builder.setStyle(null);
+        }
+
+        if (last == null || settings.color != last.color) {
+            setColor(builder, settings.color);
+        }
+
+        if (last == null || settings.resume != last.resume) {
+            builder.setContentIntent(settings.resume ? resources.getContentIntent() : null);
+        }
+
+        rendered     = settings;
+        notification = builder.build();
+        Metrics.increment(Metrics.NOTIFICATION_REBUILDS);
+
+        return true;
+    }
+
+    /**
+     * Set the progress bar without rendering the other fields again.
+     *
+     * @param max           The max value or 0 to remove the bar.
+     * @param progress      The current value.
+     * @param indeterminate Flag indicates if the progress is unknown.
+     * @return true if the notification has changed and needs to be re-posted.
+     */
+    synchronized boolean setProgress(int max, int progress, boolean indeterminate) {
+        if (max == progressMax && progress == progressValue
+                && indeterminate == progressIndeterminate)
+            return false;
+
+        progressMax           = max;
+        progressValue         = progress;
+        progressIndeterminate = indeterminate;
+
+        getBuilder().setProgress(max, progress, indeterminate);
+
+        if (notification == null)
+            return false;
+
+        notification = builder.build();
+
+        return true;
+    }
+
+    /**
+     * The last rendered notification.
+     */
+    synchronized Notification getNotification() {
+        return notification;
+    }
+
+    /**
+     * Drop the last rendered notification, e.g. after it has been removed
+     * or the resources have changed, so that the next update will be
+     * posted again.
+     */
+    synchronized void invalidate() {
+        notification = null;
+        rendered     = null;
+    }
+
+    /**
+     * The reused builder. The notification channel is registered with the
+     * first call.
+     */
+    private NotificationCompat.Builder getBuilder() {
+        if (builder != null)
+            return builder;
+
+        createNotificationChannel();
+
+        builder = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true);
+
+        return builder;
+    }
+
+    /**
+     * The reused style for multi line texts.
+     */
+    private NotificationCompat.BigTextStyle getBigTextStyle() {
+        if (bigTextStyle == null) {
+            bigTextStyle = new NotificationCompat.BigTextStyle();
+        }
+
+        return bigTextStyle;
+    }
+
+    private void createNotificationChannel() {
+        // Create the NotificationChannel, but only on API 26+ because
+        // the NotificationChannel class is new and not in the support library
+        if (channelCreated || Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
+            return;
+
+        CharSequence name = "Activity notification";
+        String description = "Shows that the app is running in the background.";
+        int importance = NotificationManager.IMPORTANCE_LOW;
+
+        NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID, name, importance);
+        channel.setDescription(description);
+
+        // Register the channel with the system; you can't change the importance
+        // or other notification behaviors after this
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        assert notificationManager != null;
+        notificationManager.createNotificationChannel(channel);
+
+        channelCreated = true;
+    }
+
+    /**
+     * Set notification color if its supported by the SDK.
+     *
+     * @param builder A Notification.Builder instance
+     * @param color   The aRGB value of the color
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void setColor(NotificationCompat.Builder builder, int color) {
+        if (Build.VERSION.SDK_INT < 21)
+            return;
+
+        builder.setColor(color);
+    }
+
+}
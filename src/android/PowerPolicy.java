@@ -0,0 +1,404 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.PowerManager.OnThermalStatusChangedListener;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+import static android.content.Context.POWER_SERVICE;
+
+/**
+ * Scales the background work down when the battery runs low, power saving
+ * is on or the device gets hot. The inputs are mapped to a tier, which the
+ * plugin applies to the wake lock duty cycle, the tick rate and the wake
+ * lock of the service. Each decision is logged with its reasons.
+ */
+final class PowerPolicy {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Battery level in percent from which on to conserve power
+    private static final int LOW_BATTERY = 15;
+
+    // Battery level in percent from which on to do the minimum
+    private static final int CRITICAL_BATTERY = 5;
+
+    // Number of kept decisions
+    private static final int HISTORY = 16;
+
+    /**
+     * How much background work is allowed.
+     */
+    enum Tier {
+        // Run as configured
+        NORMAL(0, 0, 1, true),
+        // Keep the CPU awake for half of each minute, ticks at half rate
+        CONSERVE(30 * 1000, 60 * 1000, 2, true),
+        // Keep the CPU awake for 10s of each minute, ticks at quarter rate,
+        // the service does not hold the CPU on its own
+        MINIMAL(10 * 1000, 60 * 1000, 4, false);
+
+        // Duty cycle of the wake lock, 0 to keep the configured one
+        final long dutyAwake;
+        final long dutyPeriod;
+
+        // Factor applied to the tick intervals
+        final int tickSlowdown;
+
+        // Flag indicates if the service may hold the wake lock
+        final boolean serviceWakeLock;
+
+        Tier(long dutyAwake, long dutyPeriod, int tickSlowdown, boolean serviceWakeLock) {
+            this.dutyAwake       = dutyAwake;
+            this.dutyPeriod      = dutyPeriod;
+            this.tickSlowdown    = tickSlowdown;
+            this.serviceWakeLock = serviceWakeLock;
+        }
+    }
+
+    /**
+     * Receives the tier whenever it changes.
+     */
+    interface Listener {
+        /**
+         * Called on the main thread.
+         *
+         * @param tier The new tier.
+         */
+        void onTierChanged(Tier tier);
+    }
+
+    // The tier in effect, read by the service
+    private static volatile Tier current = Tier.NORMAL;
+
+    // Application context to register the receivers
+    private final Context context;
+
+    // Notified about changes of the tier
+    private final Listener listener;
+
+    // Queries power saving and the thermal status
+    private final PowerManager pm;
+
+    // Delivers the callbacks on the main thread
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // The latest decisions, oldest first
+    private final ArrayDeque<JSONObject> history = new ArrayDeque<JSONObject>();
+
+    // Battery level in percent or -1 if unknown
+    private int battery = -1;
+
+    // Flag indicates if the device is charging
+    private boolean charging = false;
+
+    // Flag indicates if power saving is on
+    private boolean powerSave = false;
+
+    // Thermal status of the device
+    private int thermal = PowerManager.THERMAL_STATUS_NONE;
+
+    // Flag indicates if the receivers are registered
+    private boolean isStarted = false;
+
+    // Listens to the thermal status on API 29+
+    private OnThermalStatusChangedListener thermalListener;
+
+    // Receives battery and power saving changes
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                onBatteryChanged(intent);
+            } else {
+                onPowerSaveChanged();
+            }
+        }
+    };
+
+    /**
+     * Initialize the policy.
+     *
+     * @param context  Any context of the app.
+     * @param listener Notified about changes of the tier.
+     */
+    PowerPolicy(Context context, Listener listener) {
+        this.context  = context.getApplicationContext();
+        this.listener = listener;
+        this.pm       = (PowerManager) context.getSystemService(POWER_SERVICE);
+    }
+
+    /**
+     * The tier in effect.
+     */
+    static Tier getTier() {
+        return current;
+    }
+
+    /**
+     * Start watching the inputs.
+     */
+    synchronized void start() {
+        if (isStarted)
+            return;
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        }
+
+        isStarted = true;
+        powerSave = isPowerSaveMode();
+
+        Intent battery = context.registerReceiver(receiver, filter);
+
+        if (battery != null) {
+            onBatteryChanged(battery);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            addThermalListener();
+        }
+
+        decide("start");
+    }
+
+    /**
+     * Stop watching the inputs.
+     */
+    synchronized void stop() {
+        if (!isStarted)
+            return;
+
+        isStarted = false;
+        context.unregisterReceiver(receiver);
+
+        if (thermalListener != null) {
+            removeThermalListener();
+        }
+    }
+
+    /**
+     * The inputs, the tier and the latest decisions.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+
+        json.put("tier", nameOf(current));
+        json.put("battery", battery);
+        json.put("charging", charging);
+        json.put("powerSave", powerSave);
+        json.put("thermal", thermal);
+        json.put("decisions", new JSONArray(history));
+
+        return json;
+    }
+
+    /**
+     * Read level and charging state.
+     *
+     * @param intent The sticky battery intent.
+     */
+    private synchronized void onBatteryChanged(Intent intent) {
+        int level  = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale  = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+
+        battery  = level >= 0 && scale > 0 ? level * 100 / scale : -1;
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+
+        decide("battery");
+    }
+
+    /**
+     * Read the power saving mode.
+     */
+    private synchronized void onPowerSaveChanged() {
+        powerSave = isPowerSaveMode();
+        decide("powerSave");
+    }
+
+    /**
+     * If the power saving mode is on. The mode exists since API 21.
+     */
+    private boolean isPowerSaveMode() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && pm.isPowerSaveMode();
+    }
+
+    /**
+     * Read the thermal status.
+     *
+     * @param status The new thermal status.
+     */
+    private synchronized void onThermalChanged(int status) {
+        thermal = status;
+        decide("thermal");
+    }
+
+    /**
+     * Map the inputs to a tier and apply it if it has changed. The heat
+     * of the device counts even while charging.
+     *
+     * @param trigger The input which has changed.
+     */
+    private void decide(String trigger) {
+        JSONArray reasons = new JSONArray();
+        Tier tier         = Tier.NORMAL;
+
+        if (thermal >= PowerManager.THERMAL_STATUS_SEVERE) {
+            tier = Tier.MINIMAL;
+            reasons.put("thermal " + thermal);
+        } else if (thermal >= PowerManager.THERMAL_STATUS_MODERATE) {
+            tier = Tier.CONSERVE;
+            reasons.put("thermal " + thermal);
+        }
+
+        if (!charging && battery >= 0 && battery <= CRITICAL_BATTERY) {
+            tier = Tier.MINIMAL;
+            reasons.put("battery " + battery + "%");
+        } else if (!charging && battery >= 0 && battery <= LOW_BATTERY) {
+            tier = max(tier, Tier.CONSERVE);
+            reasons.put("battery " + battery + "%");
+        }
+
+        if (!charging && powerSave) {
+            tier = max(tier, Tier.CONSERVE);
+            reasons.put("power save");
+        }
+
+        if (tier == current)
+            return;
+
+        Tier previous = current;
+        current       = tier;
+
+        Log.i(TAG, "Power tier " + nameOf(previous) + " -> " + nameOf(tier)
+                + " on " + trigger + ", reasons " + reasons);
+
+        record(previous, tier, trigger, reasons);
+
+        final Tier changed = tier;
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onTierChanged(changed);
+            }
+        });
+    }
+
+    /**
+     * Keep the decision and send it to JS.
+     *
+     * @param from    The previous tier.
+     * @param to      The new tier.
+     * @param trigger The input which has changed.
+     * @param reasons Why the tier has been chosen.
+     */
+    private void record(Tier from, Tier to, String trigger, JSONArray reasons) {
+        JSONObject decision = new JSONObject();
+
+        try {
+            decision.put("tier", nameOf(to));
+            decision.put("previous", nameOf(from));
+            decision.put("trigger", trigger);
+            decision.put("reasons", reasons);
+            decision.put("battery", battery);
+            decision.put("charging", charging);
+            decision.put("powerSave", powerSave);
+            decision.put("thermal", thermal);
+            decision.put("time", System.currentTimeMillis());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        history.add(decision);
+
+        if (history.size() > HISTORY) {
+            history.poll();
+        }
+
+        EventChannel.getInstance().send("tier", decision);
+    }
+
+    /**
+     * Listen to the thermal status.
+     */
+    @TargetApi(Build.VERSION_CODES.Q)
+    private void addThermalListener() {
+        thermal = pm.getCurrentThermalStatus();
+
+        thermalListener = new OnThermalStatusChangedListener() {
+            @Override
+            public void onThermalStatusChanged(int status) {
+                onThermalChanged(status);
+            }
+        };
+
+        pm.addThermalStatusListener(thermalListener);
+    }
+
+    /**
+     * Stop listening to the thermal status.
+     */
+    @TargetApi(Build.VERSION_CODES.Q)
+    private void removeThermalListener() {
+        pm.removeThermalStatusListener(thermalListener);
+        thermalListener = null;
+    }
+
+    /**
+     * The more restrictive tier.
+     */
+    private static Tier max(Tier a, Tier b) {
+        return a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    /**
+     * The name of the tier as used in JS.
+     *
+     * @param tier The tier.
+     */
+    static String nameOf(Tier tier) {
+        return tier.name().toLowerCase(Locale.ROOT);
+    }
+
+}
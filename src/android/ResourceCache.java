@@ -0,0 +1,182 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.appplant.cordova.plugin.background.ForegroundService.NOTIFICATION_ID;
+
+/**
+ * Caches the results of resource and package manager lookups, which are
+ * slow and never change as long as the configuration stays the same.
+ */
+final class ResourceCache {
+
+    // Name of the icon used if the configured one does not exist
+    static final String DEFAULT_ICON = "icon";
+
+    // The shared instance
+    private static ResourceCache instance;
+
+    // Application context used for the lookups
+    private final Context context;
+
+    // Resolved resource IDs by icon name
+    private final Map<String, Integer> icons = new HashMap<String, Integer>();
+
+    // The launch intent for the main activity
+    private Intent launchIntent;
+
+    // Intent used to bring the app to foreground from the notification
+    private PendingIntent contentIntent;
+
+    // Flag indicates if the launch intent has been looked up
+    private boolean launchIntentResolved = false;
+
+    /**
+     * Initialize the cache.
+     *
+     * @param context The application context.
+     */
+    private ResourceCache(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * The shared cache instance.
+     *
+     * @param context Any context of the app.
+     */
+    static synchronized ResourceCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ResourceCache(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Resolve the default icon and the launch intent upfront.
+     */
+    synchronized void preload() {
+        getIconResId(DEFAULT_ICON);
+        getContentIntent();
+    }
+
+    /**
+     * Forget all cached lookups, e.g. after the configuration has changed.
+     */
+    synchronized void invalidate() {
+        icons.clear();
+        launchIntent         = null;
+        contentIntent        = null;
+        launchIntentResolved = false;
+    }
+
+    /**
+     * Retrieves the resource ID of the icon.
+     *
+     * @param icon The name of the icon.
+     * @return The resource id or 0 if not found.
+     */
+    synchronized int getIconResId(String icon) {
+        Integer cached = icons.get(icon);
+
+        if (cached != null)
+            return cached;
+
+        // cordova-android 6 uses mipmaps
+        int resId = getIconResId(icon, "mipmap");
+
+        if (resId == 0) {
+            resId = getIconResId(icon, "drawable");
+        }
+
+        icons.put(icon, resId);
+
+        return resId;
+    }
+
+    /**
+     * A copy of the launch intent for the main activity.
+     *
+     * @return null if the app has no launch intent.
+     */
+    synchronized Intent getLaunchIntent() {
+        if (!launchIntentResolved) {
+            String pkgName = context.getPackageName();
+            launchIntent = context.getPackageManager().getLaunchIntentForPackage(pkgName);
+            launchIntentResolved = true;
+        }
+
+        return launchIntent != null ? new Intent(launchIntent) : null;
+    }
+
+    /**
+     * The intent to bring the app to foreground when tapping on the
+     * notification.
+     *
+     * @return null if the app has no launch intent.
+     */
+    synchronized PendingIntent getContentIntent() {
+        if (contentIntent != null)
+            return contentIntent;
+
+        Intent intent = getLaunchIntent();
+
+        if (intent == null)
+            return null;
+
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        contentIntent = PendingIntent.getActivity(context, NOTIFICATION_ID, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+
+        return contentIntent;
+    }
+
+    /**
+     * Retrieve resource id of the specified icon.
+     *
+     * @param icon The name of the icon.
+     * @param type The resource type where to look for.
+     * @return The resource id or 0 if not found.
+     */
+    private int getIconResId(String icon, String type) {
+        Resources res = context.getResources();
+        String pkgName = context.getPackageName();
+
+        int resId = res.getIdentifier(icon, type, pkgName);
+
+        if (resId == 0) {
+            resId = res.getIdentifier(DEFAULT_ICON, type, pkgName);
+        }
+
+        return resId;
+    }
+
+}
@@ -0,0 +1,421 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Append-only ring of binary records backed by a memory-mapped file, so that
+ * samples collected in background survive the process being killed. Records
+ * are framed by a 4-byte big endian length, which is also the format of a
+ * batch to append and of the drained data. The header gets written before
+ * old records are overwritten, so that it never points at partly written
+ * records if the process dies in the middle of a batch.
+ */
+final class SampleBuffer {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Name of the file in the files dir of the app
+    private static final String FILE_NAME = "background-mode-samples.bin";
+
+    // Marks a valid file
+    private static final int MAGIC = 0x424d5342;
+
+    // Size of the header: magic, capacity, head, used, count, dropped, policy
+    private static final int HEADER = 4 * 5 + 8 + 4;
+
+    // Size of the length prefix of a record
+    private static final int FRAME = 4;
+
+    // Default size of the data region in bytes
+    static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    // What happens if a record does not fit
+    enum Policy {
+        // Drop the oldest records
+        OVERWRITE,
+        // Reject the new record
+        REJECT
+    }
+
+    // The mapped file
+    private final File file;
+
+    // The mapped region including the header
+    private MappedByteBuffer buffer;
+
+    // Size of the data region in bytes
+    private int capacity;
+
+    // What happens if a record does not fit
+    private Policy policy = Policy.OVERWRITE;
+
+    // Offset of the oldest record within the data region
+    private int head;
+
+    // Bytes in use within the data region
+    private int used;
+
+    // Number of records
+    private int count;
+
+    // Number of records dropped to make room
+    private long dropped;
+
+    // Number of records rejected since start, not persisted
+    private long rejected;
+
+    // Reused to read the length prefix across the wrap
+    private final byte[] scratch = new byte[FRAME];
+
+    /**
+     * Map the file, restoring the records of a previous run.
+     *
+     * @param context The context of the app.
+     */
+    SampleBuffer(Context context) throws IOException {
+        file = new File(context.getFilesDir(), FILE_NAME);
+        map(file.length() > HEADER + FRAME
+                ? (int) (file.length() - HEADER) : DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Change capacity and policy. Records are kept as long as they fit,
+     * the oldest ones get dropped otherwise. If the file cannot be mapped
+     * with the new capacity, the buffer keeps its records and capacity.
+     *
+     * @param capacity The size of the data region in bytes.
+     * @param policy   What happens if a record does not fit.
+     */
+    synchronized void configure(int capacity, Policy policy) throws IOException {
+        this.policy = policy;
+
+        if (capacity <= FRAME || capacity == this.capacity) {
+            writeHeader();
+            return;
+        }
+
+        byte[] records = new byte[used];
+
+        read(head, records, used);
+
+        // the current region stays in use if the new one cannot be mapped
+        buffer        = open(capacity);
+        this.capacity = capacity;
+        head          = 0;
+        used          = 0;
+        count         = 0;
+
+        writeHeader();
+        appendAll(records, Policy.OVERWRITE);
+    }
+
+    /**
+     * Append a batch of length prefixed records.
+     *
+     * @param records The framed records.
+     * @return The number of appended records.
+     */
+    synchronized int append(byte[] records) {
+        return appendAll(records, policy);
+    }
+
+    /**
+     * Remove and return all records.
+     *
+     * @return The framed records, oldest first.
+     */
+    synchronized byte[] drain() {
+        byte[] records = new byte[used];
+
+        read(head, records, used);
+
+        head  = 0;
+        used  = 0;
+        count = 0;
+
+        writeHeader();
+
+        return records;
+    }
+
+    /**
+     * Flush the mapped pages to the file.
+     */
+    synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Fill level and counters.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+
+        json.put("capacity", capacity);
+        json.put("policy", policy.name().toLowerCase(Locale.ROOT));
+        json.put("used", used);
+        json.put("count", count);
+        json.put("dropped", dropped);
+        json.put("rejected", rejected);
+
+        return json;
+    }
+
+    /**
+     * Parse the policy name.
+     *
+     * @param name The name like "overwrite" or "reject".
+     * @return OVERWRITE if unknown.
+     */
+    static Policy parsePolicy(String name) {
+        return "reject".equalsIgnoreCase(name) ? Policy.REJECT : Policy.OVERWRITE;
+    }
+
+    /**
+     * Map the file with the given capacity. A file of another size or
+     * without the magic gets reset to the default policy.
+     *
+     * @param capacity The size of the data region in bytes.
+     */
+    private void map(int capacity) throws IOException {
+        buffer        = open(capacity);
+        this.capacity = capacity;
+
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == capacity && readHeader())
+            return;
+
+        head    = 0;
+        used    = 0;
+        count   = 0;
+        dropped = 0;
+        policy  = Policy.OVERWRITE;
+
+        writeHeader();
+    }
+
+    /**
+     * Resize the file and map it with the given capacity. The file shrinks
+     * only once the new region is mapped, so the current one stays valid
+     * if mapping fails.
+     *
+     * @param capacity The size of the data region in bytes.
+     * @return The mapped region including the header.
+     */
+    private MappedByteBuffer open(int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        int size             = HEADER + capacity;
+
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+
+            MappedByteBuffer region = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            if (raf.length() > size) {
+                raf.setLength(size);
+            }
+
+            return region;
+        } finally {
+            // the mapping stays valid after the file got closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Restore the state from the header.
+     *
+     * @return false if the header is corrupt.
+     */
+    private boolean readHeader() {
+        head    = buffer.getInt(8);
+        used    = buffer.getInt(12);
+        count   = buffer.getInt(16);
+        dropped = buffer.getLong(20);
+
+        int mode = buffer.getInt(28);
+
+        boolean valid = head >= 0 && head < capacity
+                && used >= 0 && used <= capacity
+                && count >= 0 && count <= used / FRAME
+                && mode >= 0 && mode < Policy.values().length;
+
+        if (valid) {
+            policy = Policy.values()[mode];
+        }
+
+        if (!valid) {
+            Log.w(TAG, "Discarding corrupt sample buffer");
+        }
+
+        return valid;
+    }
+
+    /**
+     * Persist the state in the header.
+     */
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+        buffer.putInt(8, head);
+        buffer.putInt(12, used);
+        buffer.putInt(16, count);
+        buffer.putLong(20, dropped);
+        buffer.putInt(28, policy.ordinal());
+    }
+
+    /**
+     * Append a batch of length prefixed records.
+     *
+     * @param records The framed records.
+     * @param policy  What happens if a record does not fit.
+     * @return The number of appended records.
+     */
+    private int appendAll(byte[] records, Policy policy) {
+        ByteBuffer batch = ByteBuffer.wrap(records);
+        int appended     = 0;
+
+        while (batch.remaining() >= FRAME) {
+            int offset = batch.position();
+            int length = batch.getInt();
+
+            if (length < 0 || length > batch.remaining()) {
+                Log.w(TAG, "Truncated sample batch at " + offset);
+                break;
+            }
+
+            batch.position(batch.position() + length);
+
+            if (put(records, offset, FRAME + length, policy)) {
+                appended++;
+            } else {
+                rejected++;
+            }
+        }
+
+        writeHeader();
+
+        return appended;
+    }
+
+    /**
+     * Write one framed record, making room if the policy allows.
+     *
+     * @param src    The source array.
+     * @param offset The offset of the framed record.
+     * @param size   The size of the framed record.
+     * @param policy What happens if the record does not fit.
+     * @return false if the record has been rejected.
+     */
+    private boolean put(byte[] src, int offset, int size, Policy policy) {
+        if (size > capacity)
+            return false;
+
+        if (capacity - used < size && policy == Policy.REJECT)
+            return false;
+
+        if (capacity - used < size) {
+            while (capacity - used < size) {
+                dropOldest();
+            }
+
+            // the header must not point at the region about to be overwritten
+            writeHeader();
+        }
+
+        write((head + used) % capacity, src, offset, size);
+
+        used += size;
+        count++;
+
+        return true;
+    }
+
+    /**
+     * Drop the oldest record.
+     */
+    private void dropOldest() {
+        read(head, scratch, FRAME);
+
+        int size = FRAME + ByteBuffer.wrap(scratch).getInt();
+
+        head   = (head + size) % capacity;
+        used  -= size;
+        count--;
+        dropped++;
+    }
+
+    /**
+     * Copy into the data region, wrapping at its end.
+     *
+     * @param pos    The offset within the data region.
+     * @param src    The source array.
+     * @param offset The offset within the source array.
+     * @param length The number of bytes to copy.
+     */
+    private void write(int pos, byte[] src, int offset, int length) {
+        int first = Math.min(length, capacity - pos);
+
+        buffer.position(HEADER + pos);
+        buffer.put(src, offset, first);
+
+        if (length > first) {
+            buffer.position(HEADER);
+            buffer.put(src, offset + first, length - first);
+        }
+    }
+
+    /**
+     * Copy out of the data region, wrapping at its end.
+     *
+     * @param pos    The offset within the data region.
+     * @param dst    The destination array.
+     * @param length The number of bytes to copy.
+     */
+    private void read(int pos, byte[] dst, int length) {
+        int first = Math.min(length, capacity - pos);
+
+        buffer.position(HEADER + pos);
+        buffer.get(dst, 0, first);
+
+        if (length > first) {
+            buffer.position(HEADER);
+            buffer.get(dst, first, length - first);
+        }
+    }
+
+}
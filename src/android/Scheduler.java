@@ -0,0 +1,55 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * Shared thread for the timers of the plugin, e.g. to let wake lock leases
+ * expire. Keeps the timers off the main thread without spawning a thread
+ * per feature.
+ */
+final class Scheduler {
+
+    // The shared handler
+    private static Handler handler;
+
+    private Scheduler() {}
+
+    /**
+     * The handler of the shared scheduler thread.
+     */
+    static synchronized Handler getHandler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("BackgroundMode-scheduler",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        return handler;
+    }
+
+}
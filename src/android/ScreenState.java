@@ -0,0 +1,191 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.KeyguardManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import static android.content.Context.KEYGUARD_SERVICE;
+
+/**
+ * Tracks the state of the screen through the broadcasts of the system, so
+ * that it can be read without asking the PowerManager each time. Changes
+ * are sent to JS as the screen event.
+ */
+final class ScreenState {
+
+    // Flag indicates if the receiver is registered and the state known
+    private static volatile boolean isTracked = false;
+
+    // Flag indicates if the screen is on
+    private static volatile boolean screenOn = true;
+
+    // Flag indicates if the device is ready to interact with the user
+    private static volatile boolean interactive = true;
+
+    // Flag indicates if the user has unlocked the device
+    private static volatile boolean userPresent = true;
+
+    // Time of the last change
+    private static volatile long changedAt = 0;
+
+    // Application context to register the receiver
+    private final Context context;
+
+    // Receives the screen and unlock broadcasts
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onChanged(intent.getAction());
+        }
+    };
+
+    /**
+     * Initialize the tracker.
+     *
+     * @param context Any context of the app.
+     */
+    ScreenState(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * If the state is tracked, else it needs to be queried.
+     */
+    static boolean isTracked() {
+        return isTracked;
+    }
+
+    /**
+     * If the screen is off or the device not interactive, as cached.
+     */
+    static boolean isDimmed() {
+        return !screenOn || !interactive;
+    }
+
+    /**
+     * Start tracking the state.
+     */
+    synchronized void start() {
+        if (isTracked)
+            return;
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_USER_PRESENT);
+
+        context.registerReceiver(receiver, filter);
+        read();
+
+        userPresent = screenOn && !isKeyguardLocked();
+        changedAt   = SystemClock.elapsedRealtime();
+        isTracked   = true;
+    }
+
+    /**
+     * Stop tracking the state.
+     */
+    synchronized void stop() {
+        if (!isTracked)
+            return;
+
+        isTracked = false;
+        context.unregisterReceiver(receiver);
+    }
+
+    /**
+     * The cached state.
+     */
+    static JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+
+        json.put("screenOn", screenOn);
+        json.put("interactive", interactive);
+        json.put("userPresent", userPresent);
+        json.put("dimmed", isDimmed());
+        json.put("since", changedAt);
+
+        return json;
+    }
+
+    /**
+     * Update the state and tell JS.
+     *
+     * @param action The action of the broadcast.
+     */
+    private synchronized void onChanged(String action) {
+        String trigger;
+
+        read();
+
+        if (Intent.ACTION_SCREEN_ON.equals(action)) {
+            trigger  = "screenOn";
+            screenOn = true;
+        } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+            trigger     = "screenOff";
+            screenOn    = false;
+            userPresent = false;
+        } else {
+            trigger     = "userPresent";
+            userPresent = true;
+        }
+
+        changedAt = SystemClock.elapsedRealtime();
+
+        try {
+            JSONObject data = toJSON();
+            data.put("trigger", trigger);
+            EventChannel.getInstance().send("screen", data);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Query the interactive state. The screen state follows the broadcasts
+     * afterwards.
+     */
+    private void read() {
+        interactive = !BackgroundExt.queryDimmed(context);
+
+        if (!isTracked) {
+            screenOn = interactive;
+        }
+    }
+
+    /**
+     * If the keyguard is showing.
+     */
+    private boolean isKeyguardLocked() {
+        KeyguardManager km = (KeyguardManager) context.getSystemService(KEYGUARD_SERVICE);
+
+        return km != null && km.isKeyguardLocked();
+    }
+
+}
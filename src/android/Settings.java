@@ -0,0 +1,219 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable snapshot of the settings passed by configure. The JSON dict is
+ * parsed once, so that the notification path reads plain fields and the
+ * snapshot can be shared between threads without copying.
+ */
+final class Settings {
+
+    // Default title of the background notification
+    private static final String NOTIFICATION_TITLE = "App is running in background";
+
+    // Default text of the background notification
+    private static final String NOTIFICATION_TEXT = "Doing heavy tasks.";
+
+    // Default time in ms the app has to stay in background before the
+    // service gets started
+    private static final long DEFAULT_DEBOUNCE = 500;
+
+    // Default time in ms the service keeps running after the last
+    // keep-alive lease has been released
+    private static final long DEFAULT_LEASE_GRACE = 5000;
+
+    // Bits of the flags in the binary form
+    private static final int BIG_TEXT      = 1;
+    private static final int HIDDEN        = 1 << 1;
+    private static final int RESUME        = 1 << 2;
+    private static final int SILENT        = 1 << 3;
+    private static final int KEEP_AWAKE    = 1 << 4;
+    private static final int REQUIRE_LEASE = 1 << 5;
+
+    // Marker for an unset color
+    static final int NO_COLOR = 0;
+
+    // The settings if none have been configured yet
+    static final Settings DEFAULT = parse(new JSONObject());
+
+    // The title of the notification
+    final String title;
+
+    // The text of the notification
+    final String text;
+
+    // The name of the icon
+    final String icon;
+
+    // The aRGB color or NO_COLOR
+    final int color;
+
+    // Flag indicates if the text spans multiple lines
+    final boolean bigText;
+
+    // Flag indicates if the notification has min priority
+    final boolean hidden;
+
+    // Flag indicates if tapping the notification resumes the app
+    final boolean resume;
+
+    // Flag indicates if the notification is hidden in background
+    final boolean silent;
+
+    // Flag indicates if the service holds a wake lock lease
+    final boolean keepAwake;
+
+    // Time in ms the app has to stay in background before the service starts
+    final long debounce;
+
+    // Flag indicates if the service runs only while a keep-alive lease is live
+    final boolean requireLease;
+
+    // Time in ms the service keeps running after the last lease
+    final long leaseGrace;
+
+    /**
+     * Parse the settings.
+     *
+     * @param settings A JSON dict with the settings.
+     */
+    private Settings(JSONObject settings) {
+        title     = settings.optString("title", NOTIFICATION_TITLE);
+        text      = settings.optString("text", NOTIFICATION_TEXT);
+        icon      = settings.optString("icon", ResourceCache.DEFAULT_ICON);
+        color     = parseColor(settings.optString("color", null));
+        bigText   = settings.optBoolean("bigText", false) || text.contains("\n");
+        hidden    = settings.optBoolean("hidden", true);
+        resume    = settings.optBoolean("resume");
+        silent    = settings.optBoolean("silent", false);
+        keepAwake = settings.optBoolean("keepAwake", true);
+        debounce  = settings.optLong("debounce", DEFAULT_DEBOUNCE);
+
+        requireLease = settings.optBoolean("requireLease", false);
+        leaseGrace   = settings.optLong("leaseGrace", DEFAULT_LEASE_GRACE);
+    }
+
+    /**
+     * Restore the settings from the binary form.
+     *
+     * @param in The input to read from.
+     */
+    private Settings(DataInput in) throws IOException {
+        title      = in.readUTF();
+        text       = in.readUTF();
+        icon       = in.readUTF();
+        color      = in.readInt();
+        debounce   = in.readLong();
+        leaseGrace = in.readLong();
+
+        int flags = in.readByte();
+
+        bigText      = (flags & BIG_TEXT) != 0;
+        hidden       = (flags & HIDDEN) != 0;
+        resume       = (flags & RESUME) != 0;
+        silent       = (flags & SILENT) != 0;
+        keepAwake    = (flags & KEEP_AWAKE) != 0;
+        requireLease = (flags & REQUIRE_LEASE) != 0;
+    }
+
+    /**
+     * Parse the settings.
+     *
+     * @param settings A JSON dict with the settings.
+     */
+    static Settings parse(JSONObject settings) {
+        return new Settings(settings);
+    }
+
+    /**
+     * Restore the settings written by writeTo.
+     *
+     * @param in The input to read from.
+     */
+    static Settings readFrom(DataInput in) throws IOException {
+        return new Settings(in);
+    }
+
+    /**
+     * Write the settings in a compact binary form.
+     *
+     * @param out The output to write to.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        int flags = (bigText ? BIG_TEXT : 0)
+                | (hidden ? HIDDEN : 0)
+                | (resume ? RESUME : 0)
+                | (silent ? SILENT : 0)
+                | (keepAwake ? KEEP_AWAKE : 0)
+                | (requireLease ? REQUIRE_LEASE : 0);
+
+        out.writeUTF(title);
+        out.writeUTF(text);
+        out.writeUTF(icon);
+        out.writeInt(color);
+        out.writeLong(debounce);
+        out.writeLong(leaseGrace);
+        out.writeByte(flags);
+    }
+
+    /**
+     * If the other settings result in the same notification.
+     *
+     * @param other The settings to compare with.
+     */
+    boolean hasSameNotification(Settings other) {
+        return other == this || (other != null
+                && title.equals(other.title)
+                && text.equals(other.text)
+                && icon.equals(other.icon)
+                && color == other.color
+                && bigText == other.bigText
+                && hidden == other.hidden
+                && resume == other.resume);
+    }
+
+    /**
+     * Parse the color definition.
+     *
+     * @param hex The color definition (red: FF0000)
+     * @return The aRGB value or NO_COLOR if not set or invalid.
+     */
+    private static int parseColor(String hex) {
+        if (hex == null)
+            return NO_COLOR;
+
+        try {
+            return Integer.parseInt(hex, 16) + 0xFF000000;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return NO_COLOR;
+        }
+    }
+
+}
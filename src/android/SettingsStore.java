@@ -0,0 +1,152 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Persists the active settings and the state of the mode in a compact binary
+ * snapshot, so that a service restarted by the system after the process got
+ * killed shows the configured notification right away.
+ */
+final class SettingsStore {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Name of the file in the files dir of the app
+    private static final String FILE_NAME = "background-mode.settings";
+
+    // Version of the binary form, older snapshots get ignored
+    private static final int VERSION = 2;
+
+    /**
+     * The persisted state.
+     */
+    static final class Snapshot {
+
+        // The settings for the notification
+        final Settings settings;
+
+        // Flag indicates if the mode was enabled
+        final boolean enabled;
+
+        // Flag indicates if the app was in background
+        final boolean inBackground;
+
+        Snapshot(Settings settings, boolean enabled, boolean inBackground) {
+            this.settings     = settings;
+            this.enabled      = enabled;
+            this.inBackground = inBackground;
+        }
+    }
+
+    private SettingsStore() {}
+
+    /**
+     * Write the snapshot. The file gets replaced atomically so that a
+     * reader never sees a partial snapshot.
+     *
+     * @param context  The context of the app.
+     * @param snapshot The state to persist.
+     */
+    static void save(Context context, Snapshot snapshot) {
+        File file = getFile(context);
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+
+            try {
+                out.writeByte(VERSION);
+                out.writeBoolean(snapshot.enabled);
+                out.writeBoolean(snapshot.inBackground);
+                snapshot.settings.writeTo(out);
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Could not replace " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not persist the settings", e);
+        }
+    }
+
+    /**
+     * Read the snapshot and record the time it took.
+     *
+     * @param context The context of the app.
+     * @return null if there is no valid snapshot.
+     */
+    static Snapshot load(Context context) {
+        File file  = getFile(context);
+        long start = SystemClock.elapsedRealtime();
+
+        if (!file.exists())
+            return null;
+
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+
+            try {
+                if (in.readByte() != VERSION)
+                    return null;
+
+                boolean enabled      = in.readBoolean();
+                boolean inBackground = in.readBoolean();
+                Settings settings    = Settings.readFrom(in);
+
+                return new Snapshot(settings, enabled, inBackground);
+            } finally {
+                in.close();
+                Metrics.record(Metrics.SETTINGS_LOAD, SystemClock.elapsedRealtime() - start);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not restore the settings", e);
+            return null;
+        }
+    }
+
+    /**
+     * The file of the snapshot.
+     *
+     * @param context The context of the app.
+     */
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+}
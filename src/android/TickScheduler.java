@@ -0,0 +1,280 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Native heartbeat for periodic work in background. All subscribers share
+ * one timer, which fires when the next subscriber is due and delivers one
+ * 'tick' event with all due subscribers. While the screen is off each
+ * subscriber uses its slower screen-off interval. Jitter and missed ticks
+ * are tracked per subscriber.
+ */
+final class TickScheduler {
+
+    // Factor applied to the interval if no screen-off interval is given
+    private static final int SCREEN_OFF_FACTOR = 4;
+
+    // Smallest supported interval
+    private static final long MIN_INTERVAL = 100;
+
+    // Subscribers by name
+    private static final Map<String, Subscription> subscriptions =
+            new HashMap<String, Subscription>();
+
+    // The scheduler of the running service or null
+    private static TickScheduler running;
+
+    // Factor applied to all intervals by the power policy
+    private static int slowdown = 1;
+
+    // Application context to query the screen state
+    private final Context context;
+
+    // Runs the timer
+    private final Handler handler = Scheduler.getHandler();
+
+    // Fires the due subscribers unless the scheduler got stopped meanwhile
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (TickScheduler.class) {
+                if (running != TickScheduler.this)
+                    return;
+
+                fire();
+                schedule();
+            }
+        }
+    };
+
+    /**
+     * Initialize the scheduler.
+     *
+     * @param context The context of the service.
+     */
+    private TickScheduler(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Start delivering ticks, called when the service gets created.
+     *
+     * @param context The context of the service.
+     */
+    static synchronized void start(Context context) {
+        if (running != null)
+            return;
+
+        long now = SystemClock.elapsedRealtime();
+
+        running = new TickScheduler(context);
+
+        for (Subscription sub : subscriptions.values()) {
+            sub.due = now + sub.interval;
+        }
+
+        running.schedule();
+    }
+
+    /**
+     * Stop delivering ticks, called when the service gets destroyed.
+     */
+    static synchronized void stop() {
+        if (running == null)
+            return;
+
+        running.handler.removeCallbacks(running.tick);
+        running = null;
+    }
+
+    /**
+     * Add or update a subscriber.
+     *
+     * @param name              The name of the subscriber.
+     * @param interval          The interval in ms.
+     * @param screenOffInterval The interval in ms while the screen is off
+     *                          or 0 to use a multiple of the interval.
+     */
+    static synchronized void subscribe(String name, long interval, long screenOffInterval) {
+        Subscription sub = subscriptions.get(name);
+
+        if (sub == null) {
+            sub = new Subscription(name);
+            subscriptions.put(name, sub);
+        }
+
+        sub.interval          = Math.max(MIN_INTERVAL, interval);
+        sub.screenOffInterval = screenOffInterval > 0
+                ? Math.max(sub.interval, screenOffInterval)
+                : sub.interval * SCREEN_OFF_FACTOR;
+        sub.due               = SystemClock.elapsedRealtime() + sub.interval;
+
+        if (running != null) {
+            running.schedule();
+        }
+    }
+
+    /**
+     * Remove a subscriber.
+     *
+     * @param name The name of the subscriber.
+     */
+    static synchronized void unsubscribe(String name) {
+        subscriptions.remove(name);
+
+        if (running != null) {
+            running.schedule();
+        }
+    }
+
+    /**
+     * Stretch all intervals, starting with the next tick.
+     *
+     * @param factor The factor applied to the intervals.
+     */
+    static synchronized void setSlowdown(int factor) {
+        slowdown = Math.max(1, factor);
+    }
+
+    /**
+     * Jitter and missed ticks per subscriber.
+     */
+    static synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+
+        for (Subscription sub : subscriptions.values()) {
+            JSONObject item = new JSONObject();
+
+            item.put("interval", sub.interval);
+            item.put("screenOffInterval", sub.screenOffInterval);
+            item.put("ticks", sub.ticks);
+            item.put("missed", sub.missed);
+            item.put("maxJitter", sub.maxJitter);
+            item.put("avgJitter", sub.ticks > 0 ? sub.totalJitter / sub.ticks : 0);
+
+            json.put(sub.name, item);
+        }
+
+        return json;
+    }
+
+    /**
+     * Schedule the timer for the next due subscriber.
+     */
+    private void schedule() {
+        handler.removeCallbacks(tick);
+
+        if (subscriptions.isEmpty())
+            return;
+
+        long next = Long.MAX_VALUE;
+
+        for (Subscription sub : subscriptions.values()) {
+            next = Math.min(next, sub.due);
+        }
+
+        handler.postDelayed(tick, Math.max(0, next - SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Deliver one event for all due subscribers.
+     */
+    private void fire() {
+        long now         = SystemClock.elapsedRealtime();
+        boolean dimmed   = BackgroundExt.isDimmed(context);
+        JSONArray names  = new JSONArray();
+        JSONObject event = new JSONObject();
+
+        for (Subscription sub : subscriptions.values()) {
+            if (sub.due > now)
+                continue;
+
+            long interval = (dimmed ? sub.screenOffInterval : sub.interval) * slowdown;
+            long jitter   = now - sub.due;
+            long missed   = jitter / interval;
+
+            sub.ticks++;
+            sub.missed      += missed;
+            sub.totalJitter += jitter;
+            sub.maxJitter    = Math.max(sub.maxJitter, jitter);
+            sub.due         += (missed + 1) * interval;
+
+            names.put(sub.name);
+        }
+
+        if (names.length() == 0)
+            return;
+
+        try {
+            event.put("names", names);
+            event.put("screenOff", dimmed);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        EventChannel.getInstance().send("tick", event);
+    }
+
+    /**
+     * A subscriber and its stats.
+     */
+    private static final class Subscription {
+
+        // The name of the subscriber
+        final String name;
+
+        // The interval in ms
+        long interval;
+
+        // The interval in ms while the screen is off
+        long screenOffInterval;
+
+        // Time when the next tick is due
+        long due;
+
+        // Number of delivered ticks
+        long ticks;
+
+        // Number of ticks skipped because the timer fired too late
+        long missed;
+
+        // Sum and max of the delays in ms of the delivered ticks
+        long totalJitter;
+        long maxJitter;
+
+        Subscription(String name) {
+            this.name = name;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timeline of the lifecycle and command events, kept in a fixed-size ring
+ * which writers fill without locking. On API 18+ each event is mirrored
+ * as a section of android.os.Trace to show up in systrace too. The ring
+ * exports as trace-event JSON, which loads into chrome://tracing or
+ * Perfetto.
+ */
+final class TraceLog {
+
+    // Number of kept events, a power of two
+    private static final int CAPACITY = 4096;
+
+    // Maps a ticket to its slot
+    private static final int MASK = CAPACITY - 1;
+
+    // Phases of the trace-event format
+    private static final char COMPLETE = 'X';
+    private static final char INSTANT  = 'i';
+
+    // Categories of the events
+    static final String LIFECYCLE = "lifecycle";
+    static final String COMMAND   = "command";
+
+    // Ticket of the next event
+    private static final AtomicLong next = new AtomicLong();
+
+    // Ticket + 1 of the event per slot once it has been written, 0 while
+    // it is being written
+    private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+
+    // Fields of the events per slot
+    private static final char[] phases       = new char[CAPACITY];
+    private static final String[] categories = new String[CAPACITY];
+    private static final String[] names      = new String[CAPACITY];
+    private static final String[] details    = new String[CAPACITY];
+    private static final String[] threads    = new String[CAPACITY];
+    private static final int[] tids          = new int[CAPACITY];
+    private static final long[] starts       = new long[CAPACITY];
+    private static final long[] durations    = new long[CAPACITY];
+
+    private TraceLog() {}
+
+    /**
+     * Record an event without duration.
+     *
+     * @param category The category of the event.
+     * @param name     The name of the event.
+     * @param detail   Optional detail shown in the args.
+     */
+    static void instant(String category, String name, String detail) {
+        beginSection(name);
+        endSection();
+
+        write(INSTANT, category, name, detail, now(), 0);
+    }
+
+    /**
+     * Open a section on the calling thread, to be closed by end on the
+     * same thread.
+     *
+     * @param name The name of the section.
+     * @return The start time to pass to end.
+     */
+    static long begin(String name) {
+        beginSection(name);
+        return now();
+    }
+
+    /**
+     * Close the section opened last on the calling thread and record it.
+     *
+     * @param category The category of the section.
+     * @param name     The name of the section.
+     * @param start    The time returned by begin.
+     * @param detail   Optional detail shown in the args.
+     */
+    static void end(String category, String name, long start, String detail) {
+        endSection();
+        write(COMPLETE, category, name, detail, start, now() - start);
+    }
+
+    /**
+     * The kept events as trace-event JSON.
+     *
+     * @param window Only events of the last ms or 0 for all.
+     */
+    static JSONObject export(long window) throws JSONException {
+        JSONArray events                 = new JSONArray();
+        Map<Integer, String> threadNames = new HashMap<Integer, String>();
+        long end                         = next.get();
+        long since                       = window > 0 ? now() - window * 1000 : 0;
+        int pid                          = Process.myPid();
+
+        for (long ticket = Math.max(0, end - CAPACITY); ticket < end; ticket++) {
+            int slot = (int) (ticket & MASK);
+
+            if (sequence.get(slot) != ticket + 1)
+                continue;
+
+            char phase      = phases[slot];
+            String category = categories[slot];
+            String name     = names[slot];
+            String detail   = details[slot];
+            String thread   = threads[slot];
+            int tid         = tids[slot];
+            long start      = starts[slot];
+            long duration   = durations[slot];
+
+            // overwritten while being read
+            if (sequence.get(slot) != ticket + 1 || start < since)
+                continue;
+
+            JSONObject event = new JSONObject();
+
+            event.put("name", name);
+            event.put("cat", category);
+            event.put("ph", String.valueOf(phase));
+            event.put("ts", start);
+            event.put("pid", pid);
+            event.put("tid", tid);
+
+            if (phase == COMPLETE) {
+                event.put("dur", duration);
+            } else {
+                event.put("s", "t");
+            }
+
+            if (detail != null) {
+                event.put("args", new JSONObject().put("detail", detail));
+            }
+
+            events.put(event);
+            threadNames.put(tid, thread);
+        }
+
+        for (Map.Entry<Integer, String> entry : threadNames.entrySet()) {
+            JSONObject meta = new JSONObject();
+
+            meta.put("name", "thread_name");
+            meta.put("ph", "M");
+            meta.put("pid", pid);
+            meta.put("tid", entry.getKey());
+            meta.put("args", new JSONObject().put("name", entry.getValue()));
+
+            events.put(meta);
+        }
+
+        JSONObject other = new JSONObject();
+
+        other.put("model", Build.MODEL);
+        other.put("sdk", Build.VERSION.SDK_INT);
+        other.put("recorded", end);
+        other.put("overwritten", Math.max(0, end - CAPACITY));
+
+        JSONObject json = new JSONObject();
+
+        json.put("traceEvents", events);
+        json.put("displayTimeUnit", "ms");
+        json.put("otherData", other);
+
+        return json;
+    }
+
+    /**
+     * Write the event into the next slot. The slot is marked as being
+     * written first, so that a reader skips it until it has been published.
+     *
+     * @param phase    The phase of the event.
+     * @param category The category of the event.
+     * @param name     The name of the event.
+     * @param detail   Optional detail shown in the args.
+     * @param start    The start time in us.
+     * @param duration The duration in us.
+     */
+    private static void write(char phase, String category, String name, String detail,
+                              long start, long duration) {
+        long ticket = next.getAndIncrement();
+        int slot    = (int) (ticket & MASK);
+
+        sequence.set(slot, 0);
+
+        phases[slot]     = phase;
+        categories[slot] = category;
+        names[slot]      = name;
+        details[slot]    = detail;
+        threads[slot]    = Thread.currentThread().getName();
+        tids[slot]       = Process.myTid();
+        starts[slot]     = start;
+        durations[slot]  = duration;
+
+        sequence.set(slot, ticket + 1);
+    }
+
+    /**
+     * Open a section of android.os.Trace, which exists since API 18.
+     *
+     * @param name The name of the section.
+     */
+    private static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * Close the section of android.os.Trace opened last on the calling
+     * thread.
+     */
+    private static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * The current time in us, in ms precision before API 17.
+     */
+    private static long now() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos() / 1000;
+        }
+
+        return SystemClock.elapsedRealtime() * 1000;
+    }
+
+}
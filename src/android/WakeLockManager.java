@@ -0,0 +1,358 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.AlarmManager.OnAlarmListener;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static android.app.AlarmManager.ELAPSED_REALTIME_WAKEUP;
+import static android.content.Context.ALARM_SERVICE;
+import static android.content.Context.POWER_SERVICE;
+import static android.os.PowerManager.PARTIAL_WAKE_LOCK;
+
+/**
+ * Holds the partial wake lock only while at least one named lease is live.
+ * Leases can be bounded in time, and an optional duty cycle keeps the CPU
+ * awake for a part of each period only. The time the lock has been held is
+ * accounted per lease.
+ */
+final class WakeLockManager {
+
+    private static final String TAG = "BackgroundMode";
+
+    // Max time the lock is held without being renewed
+    private static final long MAX_HOLD_MILLIS = 10 * 60 * 1000;
+
+    // The shared instance
+    private static WakeLockManager instance;
+
+    // The partial wake lock shared by all leases
+    private final PowerManager.WakeLock wakeLock;
+
+    // Runs the expiry and duty cycle timers
+    private final Handler handler = Scheduler.getHandler();
+
+    // The leases by name, expiring on the scheduler
+    private final LeaseTable leases = new LeaseTable(handler, name -> {
+        Log.d(TAG, "Wake lock lease " + name + " expired");
+        release(name);
+    });
+
+    // Time awake within each period of the duty cycle, 0 if disabled
+    private long dutyAwake = 0;
+
+    // Length of each period of the duty cycle
+    private long dutyPeriod = 0;
+
+    // Duty cycle configured by the app, 0 if disabled
+    private long appAwake = 0;
+    private long appPeriod = 0;
+
+    // Duty cycle enforced by the power policy, 0 if none
+    private long policyAwake = 0;
+    private long policyPeriod = 0;
+
+    // Flag indicates if the duty cycle is in its awake phase
+    private boolean dutyAwakePhase = true;
+
+    // Time when the held time has been accounted the last time
+    private long accountedAt = SystemClock.elapsedRealtime();
+
+    // Used to wake up the device for the next awake phase
+    private final AlarmManager alarmManager;
+
+    // Switches between the awake and sleep phase of the duty cycle
+    private final Runnable dutyCycle = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WakeLockManager.this) {
+                dutyAwakePhase = !dutyAwakePhase;
+                scheduleDutyCycle();
+                apply();
+            }
+        }
+    };
+
+    // Starts the awake phase even if the device went to sleep
+    private OnAlarmListener dutyCycleAlarm;
+
+    // Renews the lock before it times out
+    private final Runnable renew = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WakeLockManager.this) {
+                apply();
+            }
+        }
+    };
+
+    /**
+     * Initialize the manager.
+     *
+     * @param context The application context.
+     */
+    private WakeLockManager(Context context) {
+        PowerManager pm = (PowerManager) context.getSystemService(POWER_SERVICE);
+
+        assert pm != null;
+
+        wakeLock = pm.newWakeLock(PARTIAL_WAKE_LOCK, "etrailer:foreground_service");
+        wakeLock.setReferenceCounted(false);
+
+        alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+    }
+
+    /**
+     * The shared wake lock manager.
+     *
+     * @param context Any context of the app.
+     */
+    static synchronized WakeLockManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new WakeLockManager(context.getApplicationContext());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Acquire or renew the named lease.
+     *
+     * @param name    The name of the lease.
+     * @param timeout Time after the lease expires or 0 to hold it
+     *                until released.
+     */
+    synchronized void acquire(String name, long timeout) {
+        account();
+
+        if (leases.open(name, timeout)) {
+            dutyAwakePhase = true;
+            scheduleDutyCycle();
+        }
+
+        apply();
+    }
+
+    /**
+     * Release the named lease. The lock is released with the last lease.
+     *
+     * @param name The name of the lease.
+     */
+    synchronized void release(String name) {
+        if (!leases.isLive(name))
+            return;
+
+        account();
+        leases.close(name);
+        apply();
+    }
+
+    /**
+     * If the named lease is live.
+     *
+     * @param name The name of the lease.
+     */
+    synchronized boolean isLive(String name) {
+        return leases.isLive(name);
+    }
+
+    /**
+     * Configure the duty cycle. The lock is held for the given time at the
+     * begin of each period only.
+     *
+     * @param awake  Time awake within each period or 0 to disable.
+     * @param period Length of each period.
+     */
+    synchronized void setDutyCycle(long awake, long period) {
+        boolean valid = awake > 0 && period > awake;
+
+        appAwake  = valid ? awake : 0;
+        appPeriod = valid ? period : 0;
+
+        updateDutyCycle();
+    }
+
+    /**
+     * Enforce a duty cycle in place of the one configured by the app.
+     *
+     * @param awake  Time awake within each period or 0 to use the one
+     *               configured by the app.
+     * @param period Length of each period.
+     */
+    synchronized void setPolicyDutyCycle(long awake, long period) {
+        boolean valid = awake > 0 && period > awake;
+
+        policyAwake  = valid ? awake : 0;
+        policyPeriod = valid ? period : 0;
+
+        updateDutyCycle();
+    }
+
+    /**
+     * The accounted time the lock has been held per lease and by the
+     * evicted ones.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json              = new JSONObject();
+        List<LeaseTable.Lease> items = new ArrayList<LeaseTable.Lease>(leases.getLeases());
+
+        account();
+
+        if (leases.getEvicted() != null) {
+            items.add(leases.getEvicted());
+        }
+
+        for (LeaseTable.Lease lease : items) {
+            JSONObject item = new JSONObject();
+
+            item.put("live", lease.live);
+            item.put("count", lease.count);
+            item.put("held", lease.held);
+
+            json.put(lease.name, item);
+        }
+
+        return json;
+    }
+
+    /**
+     * Restart the duty cycle with the one of the policy if any or else the
+     * one configured by the app.
+     */
+    private void updateDutyCycle() {
+        account();
+
+        dutyAwake  = policyAwake > 0 ? policyAwake : appAwake;
+        dutyPeriod = policyAwake > 0 ? policyPeriod : appPeriod;
+
+        dutyAwakePhase = true;
+        scheduleDutyCycle();
+        apply();
+    }
+
+    /**
+     * Schedule the next phase switch of the duty cycle. As the device may
+     * fall asleep without the lock, the awake phase is started by an alarm
+     * where supported.
+     */
+    private void scheduleDutyCycle() {
+        cancelDutyCycle();
+
+        if (dutyAwake == 0 || leases.getLive() == 0)
+            return;
+
+        if (dutyAwakePhase) {
+            handler.postDelayed(dutyCycle, dutyAwake);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            alarmManager.setExact(ELAPSED_REALTIME_WAKEUP,
+                    SystemClock.elapsedRealtime() + dutyPeriod - dutyAwake,
+                    "BackgroundMode:dutycycle", getDutyCycleAlarm(), handler);
+        } else {
+            handler.postDelayed(dutyCycle, dutyPeriod - dutyAwake);
+        }
+    }
+
+    /**
+     * Cancel the next phase switch of the duty cycle.
+     */
+    private void cancelDutyCycle() {
+        handler.removeCallbacks(dutyCycle);
+
+        if (dutyCycleAlarm != null) {
+            alarmManager.cancel(dutyCycleAlarm);
+        }
+    }
+
+    /**
+     * The alarm listener which starts the awake phase.
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private OnAlarmListener getDutyCycleAlarm() {
+        if (dutyCycleAlarm == null) {
+            dutyCycleAlarm = new OnAlarmListener() {
+                @Override
+                public void onAlarm() {
+                    dutyCycle.run();
+                }
+            };
+        }
+
+        return dutyCycleAlarm;
+    }
+
+    /**
+     * Acquire or release the lock depending on the live leases and the
+     * phase of the duty cycle.
+     */
+    private void apply() {
+        boolean hold = leases.getLive() > 0 && (dutyAwake == 0 || dutyAwakePhase);
+
+        handler.removeCallbacks(renew);
+
+        if (hold) {
+            wakeLock.acquire(MAX_HOLD_MILLIS);
+            handler.postDelayed(renew, MAX_HOLD_MILLIS / 2);
+        } else if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+
+        if (leases.getLive() == 0) {
+            cancelDutyCycle();
+        }
+    }
+
+    /**
+     * Add the time the lock has been held since the last call to each live
+     * lease.
+     */
+    private void account() {
+        long now  = SystemClock.elapsedRealtime();
+        long held = now - accountedAt;
+
+        accountedAt = now;
+
+        if (!wakeLock.isHeld())
+            return;
+
+        Metrics.add(Metrics.WAKE_LOCK_MILLIS, held);
+
+        for (LeaseTable.Lease lease : leases.getLeases()) {
+            if (lease.live) {
+                lease.held += held;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+
+/**
+ * Runs the jobs of the job strategy.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class WakeupJobService extends JobService {
+
+    /**
+     * Hand the wakeup over to the strategies. The job finishes once the
+     * wakeup window has passed.
+     *
+     * @param params The parameters of the job.
+     * @return true if the job keeps running.
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        return KeepAliveStrategies.onWakeup(this, KeepAliveStrategies.JOB, new Runnable() {
+            @Override
+            public void run() {
+                jobFinished(params, false);
+            }
+        });
+    }
+
+    /**
+     * The system stopped the job early. The next one gets scheduled once
+     * the wakeup window has passed.
+     *
+     * @param params The parameters of the job.
+     * @return false as the job does not need to be retried.
+     */
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return false;
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the alarms of the alarm strategy.
+ */
+public class WakeupReceiver extends BroadcastReceiver {
+
+    /**
+     * Hand the wakeup over to the strategies. The wake lock of the window
+     * keeps the CPU awake, so the broadcast itself finishes right away.
+     *
+     * @param context The context of the app.
+     * @param intent  The intent of the alarm.
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        KeepAliveStrategies.onWakeup(context, KeepAliveStrategies.ALARM, null);
+    }
+
+}
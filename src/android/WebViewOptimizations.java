@@ -0,0 +1,266 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.view.View;
+import android.webkit.WebView;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaWebView;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+
+/**
+ * Turns the optimizations of Android/CrossWalk for hidden web views off and
+ * on again. While turned off and in background, the web view is told to be
+ * visible and its timers are resumed with a configurable cadence, so that
+ * JS keeps running at a predictable rate. All timers run on the shared
+ * scheduler and can be cancelled.
+ */
+final class WebViewOptimizations {
+
+    // Delay before the optimizations are turned off the first time
+    private static final long INITIAL_DELAY = 1000;
+
+    // Name of the CrossWalk view class
+    private static final String XWALK_VIEW = "org.crosswalk.engine.XWalkCordovaView";
+
+    // Flag indicates if the CrossWalk methods have been looked up
+    private static boolean xwalkResolved = false;
+
+    // XWalkCordovaView#onShow or null if not available
+    private static Method xwalkShow;
+
+    // XWalkCordovaView#onHide or null if not available
+    private static Method xwalkHide;
+
+    // Weak reference to the cordova interface passed by the plugin
+    private final WeakReference<CordovaInterface> cordova;
+
+    // Weak reference to the cordova web view passed by the plugin
+    private final WeakReference<CordovaWebView> webView;
+
+    // Runs the timers
+    private final Handler handler = Scheduler.getHandler();
+
+    // Flag indicates if the optimizations are turned off
+    private boolean isDisabled = false;
+
+    // Flag indicates if the app is in background
+    private boolean inBackground = false;
+
+    // Interval to keep the web view awake, 0 to do it once only
+    private long cadence = 0;
+
+    // Tells the web view to be visible
+    private final Runnable showOnUiThread = new Runnable() {
+        @Override
+        public void run() {
+            setVisible(true);
+        }
+    };
+
+    // Tells the web view to be hidden
+    private final Runnable hideOnUiThread = new Runnable() {
+        @Override
+        public void run() {
+            setVisible(false);
+        }
+    };
+
+    // Tells the web view to be visible and reschedules itself
+    private final Runnable show = new Runnable() {
+        @Override
+        public void run() {
+            runOnUiThread(showOnUiThread);
+
+            synchronized (WebViewOptimizations.this) {
+                if (isDisabled && inBackground && cadence > 0) {
+                    handler.postDelayed(this, cadence);
+                }
+            }
+        }
+    };
+
+    /**
+     * Initialize the feature.
+     *
+     * @param cordova The cordova interface.
+     * @param webView The cordova web view.
+     */
+    WebViewOptimizations(CordovaInterface cordova, CordovaWebView webView) {
+        this.cordova = new WeakReference<CordovaInterface>(cordova);
+        this.webView = new WeakReference<CordovaWebView>(webView);
+    }
+
+    /**
+     * Turn the optimizations off. Repeated calls only update the cadence.
+     *
+     * @param cadence Interval to keep the web view awake while in
+     *                background or 0 to do it once only.
+     */
+    synchronized void disable(long cadence) {
+        boolean wasDisabled = isDisabled;
+
+        this.cadence = Math.max(0, cadence);
+        isDisabled   = true;
+
+        if (!wasDisabled) {
+            handler.removeCallbacks(show);
+            handler.postDelayed(show, INITIAL_DELAY);
+        } else if (inBackground && this.cadence > 0) {
+            handler.removeCallbacks(show);
+            handler.postDelayed(show, this.cadence);
+        }
+    }
+
+    /**
+     * Turn the optimizations on again. While in background the web view
+     * gets told to be hidden.
+     */
+    synchronized void enable() {
+        if (!isDisabled)
+            return;
+
+        isDisabled = false;
+        handler.removeCallbacks(show);
+
+        if (!inBackground)
+            return;
+
+        runOnUiThread(hideOnUiThread);
+    }
+
+    /**
+     * Called when the app went to background.
+     */
+    synchronized void onPause() {
+        inBackground = true;
+
+        if (isDisabled && cadence > 0) {
+            handler.removeCallbacks(show);
+            handler.postDelayed(show, cadence);
+        }
+    }
+
+    /**
+     * Called when the app came back to foreground.
+     */
+    synchronized void onResume() {
+        inBackground = false;
+
+        if (isDisabled) {
+            handler.removeCallbacks(show);
+        }
+    }
+
+    /**
+     * Cancel all timers.
+     */
+    synchronized void onDestroy() {
+        handler.removeCallbacks(show);
+    }
+
+    /**
+     * Tell the web view to be visible or hidden.
+     *
+     * @param visible The visibility to dispatch.
+     */
+    private void setVisible(boolean visible) {
+        CordovaWebView cordovaWebView = webView.get();
+
+        if (cordovaWebView == null)
+            return;
+
+        View view = cordovaWebView.getEngine().getView();
+
+        resolveXWalk();
+
+        Method method = visible ? xwalkShow : xwalkHide;
+
+        if (method != null && method.getDeclaringClass().isInstance(view)) {
+            try {
+                method.invoke(view);
+                return;
+            } catch (Exception e) {
+                // fall back to the system web view
+            }
+        }
+
+        view.dispatchWindowVisibilityChanged(visible ? View.VISIBLE : View.GONE);
+
+        if (visible && view instanceof WebView) {
+            ((WebView) view).resumeTimers();
+        }
+    }
+
+    /**
+     * Look up the CrossWalk methods once.
+     */
+    private static synchronized void resolveXWalk() {
+        if (xwalkResolved)
+            return;
+
+        xwalkResolved = true;
+
+        try {
+            Class<?> cls = Class.forName(XWALK_VIEW);
+            xwalkShow = getMethod(cls, "onShow");
+            xwalkHide = getMethod(cls, "onHide");
+        } catch (ClassNotFoundException e) {
+            // CrossWalk is not installed
+        }
+    }
+
+    /**
+     * Look up the public method without arguments.
+     *
+     * @param cls  The class to look up.
+     * @param name The name of the method.
+     * @return null if not found.
+     */
+    private static Method getMethod(Class<?> cls, String name) {
+        try {
+            return cls.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Run the task on the main thread of the app.
+     *
+     * @param task The task to run.
+     */
+    private void runOnUiThread(Runnable task) {
+        CordovaInterface cordovaInterface = cordova.get();
+        Activity app = cordovaInterface != null ? cordovaInterface.getActivity() : null;
+
+        if (app != null) {
+            app.runOnUiThread(task);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.app;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ActivityManager {
+
+    public static class AppTask {
+        public void setExcludeFromRecents(boolean exclude) {}
+    }
+
+    public static class MemoryInfo {
+        public long availMem;
+        public boolean lowMemory;
+    }
+
+    public List<AppTask> getAppTasks() {
+        return Collections.emptyList();
+    }
+
+    public void getMemoryInfo(MemoryInfo outInfo) {
+        outInfo.availMem  = Runtime.getRuntime().freeMemory();
+        outInfo.lowMemory = false;
+    }
+
+}
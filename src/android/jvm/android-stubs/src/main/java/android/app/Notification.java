@@ -0,0 +1,185 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.app;
+
+import android.content.Context;
+import android.os.Bundle;
+
+public class Notification {
+
+    public static final int PRIORITY_MIN = -2;
+    public static final int PRIORITY_DEFAULT = 0;
+
+    public static final int VISIBILITY_SECRET = -1;
+    public static final int VISIBILITY_PRIVATE = 0;
+    public static final int VISIBILITY_PUBLIC = 1;
+
+    public static final int FLAG_ONGOING_EVENT = 0x00000002;
+    public static final int FLAG_ONLY_ALERT_ONCE = 0x00000008;
+
+    public static final String EXTRA_TITLE = "android.title";
+    public static final String EXTRA_TEXT = "android.text";
+    public static final String EXTRA_BIG_TEXT = "android.bigText";
+    public static final String EXTRA_PROGRESS = "android.progress";
+    public static final String EXTRA_PROGRESS_MAX = "android.progressMax";
+    public static final String EXTRA_PROGRESS_INDETERMINATE = "android.progressIndeterminate";
+    public static final String EXTRA_SHOW_WHEN = "android.showWhen";
+
+    public int icon;
+    public int priority;
+    public int color;
+    public int flags;
+    public int visibility;
+    public long when = System.currentTimeMillis();
+    public PendingIntent contentIntent;
+    public Bundle extras = new Bundle();
+
+    private String channelId;
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public static class Builder {
+
+        private final Notification n = new Notification();
+
+        private Style style;
+
+        public Builder(Context context) {}
+
+        public Builder(Context context, String channelId) {
+            n.channelId = channelId;
+        }
+
+        public Builder setContentTitle(CharSequence title) {
+            n.extras.putCharSequence(EXTRA_TITLE, title);
+            return this;
+        }
+
+        public Builder setContentText(CharSequence text) {
+            n.extras.putCharSequence(EXTRA_TEXT, text);
+            return this;
+        }
+
+        public Builder setSmallIcon(int icon) {
+            n.icon = icon;
+            return this;
+        }
+
+        public Builder setPriority(int priority) {
+            n.priority = priority;
+            return this;
+        }
+
+        public Builder setColor(int argb) {
+            n.color = argb;
+            return this;
+        }
+
+        public Builder setVisibility(int visibility) {
+            n.visibility = visibility;
+            return this;
+        }
+
+        public Builder setShowWhen(boolean show) {
+            n.extras.putBoolean(EXTRA_SHOW_WHEN, show);
+            return this;
+        }
+
+        public Builder setContentIntent(PendingIntent intent) {
+            n.contentIntent = intent;
+            return this;
+        }
+
+        public Builder setOngoing(boolean ongoing) {
+            setFlag(FLAG_ONGOING_EVENT, ongoing);
+            return this;
+        }
+
+        public Builder setOnlyAlertOnce(boolean onlyAlertOnce) {
+            setFlag(FLAG_ONLY_ALERT_ONCE, onlyAlertOnce);
+            return this;
+        }
+
+        public Builder setProgress(int max, int progress, boolean indeterminate) {
+            n.extras.putInt(EXTRA_PROGRESS, progress);
+            n.extras.putInt(EXTRA_PROGRESS_MAX, max);
+            n.extras.putBoolean(EXTRA_PROGRESS_INDETERMINATE, indeterminate);
+            return this;
+        }
+
+        public Builder setStyle(Style style) {
+            this.style = style;
+            return this;
+        }
+
+        public Notification build() {
+            Notification copy = new Notification();
+
+            copy.icon          = n.icon;
+            copy.priority      = n.priority;
+            copy.color         = n.color;
+            copy.flags         = n.flags;
+            copy.visibility    = n.visibility;
+            copy.contentIntent = n.contentIntent;
+            copy.channelId     = n.channelId;
+            copy.extras.putCharSequence(EXTRA_TITLE, n.extras.getCharSequence(EXTRA_TITLE));
+            copy.extras.putCharSequence(EXTRA_TEXT, n.extras.getCharSequence(EXTRA_TEXT));
+            copy.extras.putInt(EXTRA_PROGRESS, n.extras.getInt(EXTRA_PROGRESS));
+            copy.extras.putInt(EXTRA_PROGRESS_MAX, n.extras.getInt(EXTRA_PROGRESS_MAX));
+            copy.extras.putBoolean(EXTRA_PROGRESS_INDETERMINATE, n.extras.getBoolean(EXTRA_PROGRESS_INDETERMINATE));
+
+            if (style != null) {
+                style.apply(copy.extras);
+            }
+
+            return copy;
+        }
+
+        private void setFlag(int mask, boolean value) {
+            n.flags = value ? n.flags | mask : n.flags & ~mask;
+        }
+    }
+
+    public abstract static class Style {
+
+        abstract void apply(Bundle extras);
+    }
+
+    public static class BigTextStyle extends Style {
+
+        private CharSequence bigText;
+
+        public BigTextStyle bigText(CharSequence cs) {
+            bigText = cs;
+            return this;
+        }
+
+        @Override
+        void apply(Bundle extras) {
+            extras.putCharSequence(EXTRA_BIG_TEXT, bigText);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.app;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NotificationManager {
+
+    public static final int IMPORTANCE_LOW = 2;
+
+    private final Map<String, NotificationChannel> channels = new HashMap<String, NotificationChannel>();
+    private final Map<Integer, Notification> posted = new HashMap<Integer, Notification>();
+
+    public synchronized void createNotificationChannel(NotificationChannel channel) {
+        channels.put(channel.getId(), channel);
+    }
+
+    public synchronized NotificationChannel getNotificationChannel(String channelId) {
+        return channels.get(channelId);
+    }
+
+    public synchronized void notify(int id, Notification notification) {
+        posted.put(id, notification);
+    }
+
+    public synchronized void cancel(int id) {
+        posted.remove(id);
+    }
+
+}
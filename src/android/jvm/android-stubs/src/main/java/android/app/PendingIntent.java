@@ -0,0 +1,54 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+public class PendingIntent {
+
+    public static final int FLAG_IMMUTABLE = 1 << 26;
+    public static final int FLAG_UPDATE_CURRENT = 1 << 27;
+    public static final int FLAG_NO_CREATE = 1 << 29;
+
+    private final Intent intent;
+
+    private PendingIntent(Intent intent) {
+        this.intent = intent;
+    }
+
+    public static PendingIntent getActivity(Context context, int requestCode, Intent intent, int flags) {
+        return new PendingIntent(new Intent(intent));
+    }
+
+    public static PendingIntent getBroadcast(Context context, int requestCode, Intent intent, int flags) {
+        return (flags & FLAG_NO_CREATE) != 0 ? null : new PendingIntent(new Intent(intent));
+    }
+
+    public static PendingIntent getService(Context context, int requestCode, Intent intent, int flags) {
+        return (flags & FLAG_NO_CREATE) != 0 ? null : new PendingIntent(new Intent(intent));
+    }
+
+    public void cancel() {}
+
+}
@@ -0,0 +1,66 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.app;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.os.IBinder;
+
+public abstract class Service extends ContextWrapper implements ComponentCallbacks2 {
+
+    public static final int START_STICKY = 1;
+    public static final int START_NOT_STICKY = 2;
+    public static final int STOP_FOREGROUND_REMOVE = 1;
+
+    public Service() {
+        super(null);
+    }
+
+    public void onCreate() {}
+
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_STICKY;
+    }
+
+    public abstract IBinder onBind(Intent intent);
+
+    public void onDestroy() {}
+
+    public final void startForeground(int id, Notification notification) {}
+
+    public final void stopForeground(boolean removeNotification) {}
+
+    public final void stopSelf() {}
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+    @Override
+    public void onLowMemory() {}
+
+    @Override
+    public void onTrimMemory(int level) {}
+
+}
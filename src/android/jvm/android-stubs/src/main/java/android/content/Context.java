@@ -0,0 +1,88 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.os.Looper;
+
+import java.io.File;
+
+public abstract class Context {
+
+    public static final String ACTIVITY_SERVICE = "activity";
+    public static final String ALARM_SERVICE = "alarm";
+    public static final String JOB_SCHEDULER_SERVICE = "jobscheduler";
+    public static final String KEYGUARD_SERVICE = "keyguard";
+    public static final String NOTIFICATION_SERVICE = "notification";
+    public static final String POWER_SERVICE = "power";
+
+    public static final int MODE_PRIVATE = 0;
+    public static final int BIND_AUTO_CREATE = 1;
+
+    public abstract Context getApplicationContext();
+
+    public abstract String getPackageName();
+
+    public abstract Resources getResources();
+
+    public abstract PackageManager getPackageManager();
+
+    public abstract Looper getMainLooper();
+
+    public abstract File getFilesDir();
+
+    public abstract File getNoBackupFilesDir();
+
+    public abstract Object getSystemService(String name);
+
+    public abstract String getSystemServiceName(Class<?> serviceClass);
+
+    @SuppressWarnings("unchecked")
+    public final <T> T getSystemService(Class<T> serviceClass) {
+        String name = getSystemServiceName(serviceClass);
+
+        return name != null ? (T) getSystemService(name) : null;
+    }
+
+    public abstract boolean bindService(Intent service, ServiceConnection conn, int flags);
+
+    public abstract void unbindService(ServiceConnection conn);
+
+    public abstract ComponentName startService(Intent service);
+
+    public abstract ComponentName startForegroundService(Intent service);
+
+    public abstract boolean stopService(Intent service);
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+    public abstract void sendBroadcast(Intent intent);
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {}
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {}
+
+}
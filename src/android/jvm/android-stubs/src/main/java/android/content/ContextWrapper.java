@@ -0,0 +1,132 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.os.Looper;
+
+import java.io.File;
+
+public class ContextWrapper extends Context {
+
+    private Context base;
+
+    public ContextWrapper(Context base) {
+        this.base = base;
+    }
+
+    protected void attachBaseContext(Context base) {
+        this.base = base;
+    }
+
+    public Context getBaseContext() {
+        return base;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return base.getApplicationContext();
+    }
+
+    @Override
+    public String getPackageName() {
+        return base.getPackageName();
+    }
+
+    @Override
+    public Resources getResources() {
+        return base.getResources();
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return base.getPackageManager();
+    }
+
+    @Override
+    public Looper getMainLooper() {
+        return base.getMainLooper();
+    }
+
+    @Override
+    public File getFilesDir() {
+        return base.getFilesDir();
+    }
+
+    @Override
+    public File getNoBackupFilesDir() {
+        return base.getNoBackupFilesDir();
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return base.getSystemService(name);
+    }
+
+    @Override
+    public String getSystemServiceName(Class<?> serviceClass) {
+        return base.getSystemServiceName(serviceClass);
+    }
+
+    @Override
+    public boolean bindService(Intent service, ServiceConnection conn, int flags) {
+        return base.bindService(service, conn, flags);
+    }
+
+    @Override
+    public void unbindService(ServiceConnection conn) {
+        base.unbindService(conn);
+    }
+
+    @Override
+    public ComponentName startService(Intent service) {
+        return base.startService(service);
+    }
+
+    @Override
+    public ComponentName startForegroundService(Intent service) {
+        return base.startForegroundService(service);
+    }
+
+    @Override
+    public boolean stopService(Intent service) {
+        return base.stopService(service);
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return base.registerReceiver(receiver, filter);
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        base.unregisterReceiver(receiver);
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        base.sendBroadcast(intent);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.content;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class Intent {
+
+    public static final String ACTION_MAIN = "android.intent.action.MAIN";
+    public static final String ACTION_SCREEN_ON = "android.intent.action.SCREEN_ON";
+    public static final String ACTION_SCREEN_OFF = "android.intent.action.SCREEN_OFF";
+    public static final String ACTION_USER_PRESENT = "android.intent.action.USER_PRESENT";
+    public static final String ACTION_BATTERY_CHANGED = "android.intent.action.BATTERY_CHANGED";
+    public static final String ACTION_POWER_CONNECTED = "android.intent.action.ACTION_POWER_CONNECTED";
+    public static final String ACTION_POWER_DISCONNECTED = "android.intent.action.ACTION_POWER_DISCONNECTED";
+
+    public static final String CATEGORY_HOME = "android.intent.category.HOME";
+
+    public static final int FLAG_ACTIVITY_NEW_TASK = 0x10000000;
+    public static final int FLAG_ACTIVITY_SINGLE_TOP = 0x20000000;
+    public static final int FLAG_ACTIVITY_CLEAR_TOP = 0x04000000;
+    public static final int FLAG_ACTIVITY_REORDER_TO_FRONT = 0x00020000;
+
+    private String action;
+    private String packageName;
+    private String className;
+    private int flags;
+    private final Set<String> categories = new LinkedHashSet<String>();
+    private final Map<String, Object> extras = new HashMap<String, Object>();
+
+    public Intent() {}
+
+    public Intent(String action) {
+        this.action = action;
+    }
+
+    public Intent(Context context, Class<?> cls) {
+        this.className = cls.getName();
+    }
+
+    public Intent(Intent other) {
+        this.action      = other.action;
+        this.packageName = other.packageName;
+        this.className   = other.className;
+        this.flags       = other.flags;
+        this.categories.addAll(other.categories);
+        this.extras.putAll(other.extras);
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public Intent setAction(String action) {
+        this.action = action;
+        return this;
+    }
+
+    public Intent setPackage(String packageName) {
+        this.packageName = packageName;
+        return this;
+    }
+
+    public Intent addFlags(int flags) {
+        this.flags |= flags;
+        return this;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public Intent addCategory(String category) {
+        categories.add(category);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        extras.put(name, value);
+        return this;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Object value = extras.get(name);
+
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+}
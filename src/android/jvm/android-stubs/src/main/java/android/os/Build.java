@@ -0,0 +1,49 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+public class Build {
+
+    public static final String MODEL = System.getProperty("os.name", "jvm");
+
+    public static class VERSION {
+        // not a constant, so the checks are not folded at compile time
+        public static final int SDK_INT = Integer.getInteger("android.sdk", VERSION_CODES.P);
+    }
+
+    public static class VERSION_CODES {
+        public static final int JELLY_BEAN = 16;
+        public static final int JELLY_BEAN_MR1 = 17;
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int KITKAT = 19;
+        public static final int KITKAT_WATCH = 20;
+        public static final int LOLLIPOP = 21;
+        public static final int M = 23;
+        public static final int N = 24;
+        public static final int O = 26;
+        public static final int P = 28;
+        public static final int Q = 29;
+        public static final int S = 31;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class Bundle {
+
+    private final Map<String, Object> map = new HashMap<String, Object>();
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        map.put(key, value);
+    }
+
+    public boolean getBoolean(String key) {
+        Object value = map.get(key);
+
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    public void putInt(String key, int value) {
+        map.put(key, value);
+    }
+
+    public int getInt(String key) {
+        Object value = map.get(key);
+
+        return value instanceof Integer ? (Integer) value : 0;
+    }
+
+    public void putCharSequence(String key, CharSequence value) {
+        map.put(key, value);
+    }
+
+    public CharSequence getCharSequence(String key) {
+        Object value = map.get(key);
+
+        return value instanceof CharSequence ? (CharSequence) value : null;
+    }
+
+}
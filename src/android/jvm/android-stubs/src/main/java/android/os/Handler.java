@@ -0,0 +1,83 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+public class Handler {
+
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    private final Looper looper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(Looper looper, Callback callback) {
+        this.looper = looper != null ? looper : Looper.getMainLooper();
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public final boolean post(Runnable r) {
+        return postAtTime(r, null, SystemClock.uptimeMillis());
+    }
+
+    public final boolean postAtFrontOfQueue(Runnable r) {
+        return postAtTime(r, null, 0);
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return postAtTime(r, null, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return postAtTime(r, null, uptimeMillis);
+    }
+
+    public final boolean postAtTime(Runnable r, Object token, long uptimeMillis) {
+        Message msg = new Message();
+
+        msg.callback = r;
+        msg.token    = token;
+        msg.when     = uptimeMillis;
+
+        return looper.enqueue(msg);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        looper.remove(r, null);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        looper.remove(null, token);
+    }
+
+}
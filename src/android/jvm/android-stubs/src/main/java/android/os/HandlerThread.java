@@ -0,0 +1,76 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+public class HandlerThread extends Thread {
+
+    private Looper looper;
+
+    public HandlerThread(String name) {
+        this(name, Process.THREAD_PRIORITY_DEFAULT);
+    }
+
+    public HandlerThread(String name, int priority) {
+        super(name);
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        Looper.prepare();
+
+        synchronized (this) {
+            looper = Looper.myLooper();
+            notifyAll();
+        }
+
+        Looper.loop();
+    }
+
+    public synchronized Looper getLooper() {
+        while (isAlive() && looper == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        return looper;
+    }
+
+    public boolean quitSafely() {
+        Looper looper = getLooper();
+
+        if (looper == null)
+            return false;
+
+        looper.quitSafely();
+        return true;
+    }
+
+    public int getThreadId() {
+        return (int) getId();
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+import android.util.Printer;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Message loop of a thread. The main looper only runs its messages if a
+ * thread loops it, otherwise they stay queued.
+ */
+public final class Looper {
+
+    private static final ThreadLocal<Looper> current = new ThreadLocal<Looper>();
+
+    private static Looper main;
+
+    private final PriorityQueue<Message> queue = new PriorityQueue<Message>(16,
+            (a, b) -> a.when != b.when ? Long.compare(a.when, b.when) : Long.compare(a.seq, b.seq));
+
+    private long seq = 0;
+
+    private boolean quitting = false;
+
+    private Thread thread;
+
+    private Printer printer;
+
+    private Looper(Thread thread) {
+        this.thread = thread;
+    }
+
+    public static void prepare() {
+        if (current.get() != null)
+            throw new RuntimeException("Only one Looper may be created per thread");
+
+        current.set(new Looper(Thread.currentThread()));
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (main == null) {
+            main = new Looper(null);
+        }
+
+        return main;
+    }
+
+    public static Looper myLooper() {
+        Looper looper = current.get();
+
+        if (looper == null && main != null && main.thread == Thread.currentThread())
+            return main;
+
+        return looper;
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+
+        if (looper == null)
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+
+        for (;;) {
+            Message msg = looper.next();
+
+            if (msg == null)
+                return;
+
+            Printer logging = looper.printer;
+
+            if (logging != null) {
+                logging.println(">>>>> Dispatching to " + msg.callback);
+            }
+
+            msg.callback.run();
+
+            if (logging != null) {
+                logging.println("<<<<< Finished to " + msg.callback);
+            }
+        }
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public boolean isCurrentThread() {
+        return thread == Thread.currentThread();
+    }
+
+    public void setMessageLogging(Printer printer) {
+        this.printer = printer;
+    }
+
+    public synchronized void quitSafely() {
+        quitting = true;
+        notifyAll();
+    }
+
+    synchronized boolean enqueue(Message msg) {
+        if (quitting)
+            return false;
+
+        msg.seq = seq++;
+        queue.add(msg);
+        notifyAll();
+
+        return true;
+    }
+
+    synchronized void remove(Runnable callback, Object token) {
+        Iterator<Message> it = queue.iterator();
+
+        while (it.hasNext()) {
+            Message msg = it.next();
+
+            if ((callback == null || msg.callback == callback) && (token == null || msg.token == token)) {
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized Message next() {
+        for (;;) {
+            if (quitting && (queue.isEmpty() || queue.peek().when > SystemClock.uptimeMillis()))
+                return null;
+
+            Message msg = queue.peek();
+            long now    = SystemClock.uptimeMillis();
+
+            if (msg != null && msg.when <= now)
+                return queue.poll();
+
+            try {
+                wait(msg != null ? msg.when - now : 0);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+import java.util.concurrent.Executor;
+
+public class PowerManager {
+
+    public static final int PARTIAL_WAKE_LOCK = 0x00000001;
+    public static final int SCREEN_DIM_WAKE_LOCK = 0x00000006;
+    public static final int ACQUIRE_CAUSES_WAKEUP = 0x10000000;
+    public static final int ON_AFTER_RELEASE = 0x20000000;
+
+    public static final String ACTION_POWER_SAVE_MODE_CHANGED = "android.os.action.POWER_SAVE_MODE_CHANGED";
+    public static final String ACTION_DEVICE_IDLE_MODE_CHANGED = "android.os.action.DEVICE_IDLE_MODE_CHANGED";
+
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_LIGHT = 1;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    public static final int THERMAL_STATUS_CRITICAL = 4;
+    public static final int THERMAL_STATUS_EMERGENCY = 5;
+    public static final int THERMAL_STATUS_SHUTDOWN = 6;
+
+    public interface OnThermalStatusChangedListener {
+        void onThermalStatusChanged(int status);
+    }
+
+    public final class WakeLock {
+
+        private boolean held = false;
+
+        WakeLock() {}
+
+        public synchronized void acquire() {
+            held = true;
+        }
+
+        public synchronized void acquire(long timeout) {
+            held = true;
+        }
+
+        public synchronized void release() {
+            held = false;
+        }
+
+        public synchronized boolean isHeld() {
+            return held;
+        }
+
+        public void setReferenceCounted(boolean value) {}
+    }
+
+    public WakeLock newWakeLock(int levelAndFlags, String tag) {
+        return new WakeLock();
+    }
+
+    public boolean isScreenOn() {
+        return true;
+    }
+
+    public boolean isInteractive() {
+        return true;
+    }
+
+    public boolean isPowerSaveMode() {
+        return false;
+    }
+
+    public boolean isDeviceIdleMode() {
+        return false;
+    }
+
+    public boolean isIgnoringBatteryOptimizations(String packageName) {
+        return false;
+    }
+
+    public int getCurrentThermalStatus() {
+        return THERMAL_STATUS_NONE;
+    }
+
+    public void addThermalStatusListener(OnThermalStatusChangedListener listener) {}
+
+    public void addThermalStatusListener(Executor executor, OnThermalStatusChangedListener listener) {}
+
+    public void removeThermalStatusListener(OnThermalStatusChangedListener listener) {}
+
+}
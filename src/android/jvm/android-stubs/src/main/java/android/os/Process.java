@@ -0,0 +1,45 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+public class Process {
+
+    public static final int THREAD_PRIORITY_DEFAULT = 0;
+    public static final int THREAD_PRIORITY_LESS_FAVORABLE = 1;
+    public static final int THREAD_PRIORITY_MORE_FAVORABLE = -1;
+    public static final int THREAD_PRIORITY_FOREGROUND = -2;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {}
+
+    public static int myPid() {
+        return 1;
+    }
+
+    public static int myTid() {
+        return (int) Thread.currentThread().getId();
+    }
+
+    public static void killProcess(int pid) {}
+
+}
@@ -0,0 +1,41 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.os;
+
+public final class Trace {
+
+    private Trace() {}
+
+    public static boolean isEnabled() {
+        return false;
+    }
+
+    public static void beginSection(String sectionName) {}
+
+    public static void endSection() {}
+
+    public static void beginAsyncSection(String methodName, int cookie) {}
+
+    public static void endAsyncSection(String methodName, int cookie) {}
+
+}
@@ -0,0 +1,64 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.view;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+public final class Choreographer {
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final long FRAME_MILLIS = 16;
+
+    private static Choreographer instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Choreographer() {}
+
+    public static synchronized Choreographer getInstance() {
+        if (instance == null) {
+            instance = new Choreographer();
+        }
+
+        return instance;
+    }
+
+    public void postFrameCallback(final FrameCallback callback) {
+        handler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                callback.doFrame(SystemClock.elapsedRealtimeNanos());
+            }
+        }, callback, SystemClock.uptimeMillis() + FRAME_MILLIS);
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        handler.removeCallbacksAndMessages(callback);
+    }
+
+}
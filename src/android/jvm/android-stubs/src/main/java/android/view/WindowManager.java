@@ -0,0 +1,34 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.view;
+
+public interface WindowManager {
+
+    class LayoutParams {
+        public static final int FLAG_ALLOW_LOCK_WHILE_SCREEN_ON = 0x00000001;
+        public static final int FLAG_DISMISS_KEYGUARD = 0x00400000;
+        public static final int FLAG_SHOW_WHEN_LOCKED = 0x00080000;
+        public static final int FLAG_TURN_SCREEN_ON = 0x00200000;
+    }
+
+}
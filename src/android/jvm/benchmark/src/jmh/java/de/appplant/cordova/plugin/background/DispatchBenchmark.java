@@ -0,0 +1,126 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.appplant.cordova.plugin.background.CommandExecutor.Priority;
+import de.appplant.cordova.plugin.background.CommandProcessor.Target;
+
+/**
+ * Dispatching an exec() call through the action table, for an inline
+ * action and for the round trip of an action queued on the executor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    // Runs the queued actions
+    private CommandExecutor executor;
+
+    // The action table
+    private CommandProcessor processor;
+
+    // Arguments of the exec() calls
+    private final JSONArray args = new JSONArray();
+
+    // Sequence of the callback IDs
+    private int callbackId = 0;
+
+    @Setup
+    public void setUp() {
+        executor  = new CommandExecutor(CommandExecutor.DEFAULT_POOL_SIZE,
+                CommandExecutor.DEFAULT_CAPACITY, 0);
+        processor = new CommandProcessor(executor, CommandExecutor.DEFAULT_CAPACITY);
+
+        processor.register("inline", Target.INLINE, Priority.CONTROL, (args, callback) ->
+                callback.success());
+
+        processor.register("queued", Target.EXECUTOR, Priority.NORMAL, (args, callback) ->
+                callback.success());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public boolean inline() {
+        return processor.execute("inline", args, new Callback());
+    }
+
+    @Benchmark
+    public boolean inlineMixedCase() {
+        return processor.execute("InLine", args, new Callback());
+    }
+
+    @Benchmark
+    public boolean queued() throws InterruptedException {
+        Callback callback = new Callback();
+        boolean known     = processor.execute("queued", args, callback);
+
+        callback.done.await();
+
+        return known;
+    }
+
+    /**
+     * Callback of one exec() call which tells when the result arrived.
+     */
+    private final class Callback extends CallbackContext {
+
+        // Counted down with the result
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Callback() {
+            super("BackgroundMode" + callbackId++, null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            done.countDown();
+        }
+    }
+
+}
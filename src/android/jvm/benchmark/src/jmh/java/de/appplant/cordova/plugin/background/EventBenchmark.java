@@ -0,0 +1,86 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the message which fires the events in JS, for a single event and
+ * for the batch of a busy frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBenchmark {
+
+    // Number of events fired within one frame
+    private static final int FRAME_EVENTS = 8;
+
+    // Argument of the events
+    private JSONObject data;
+
+    @Setup
+    public void setUp() throws Exception {
+        data = new JSONObject();
+
+        data.put("names", new JSONArray().put("sync"));
+        data.put("level", 42);
+    }
+
+    @Benchmark
+    public String single() {
+        JSONArray batch = new JSONArray().put(EventChannel.encode("tick", data));
+
+        return new PluginResult(Status.OK, batch).getMessage();
+    }
+
+    @Benchmark
+    public String frame() {
+        JSONArray batch = new JSONArray();
+
+        for (int i = 0; i < FRAME_EVENTS; i++) {
+            batch.put(EventChannel.encode("tick", data));
+        }
+
+        return new PluginResult(Status.OK, batch).getMessage();
+    }
+
+}
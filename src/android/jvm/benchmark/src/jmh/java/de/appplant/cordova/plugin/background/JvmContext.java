@@ -0,0 +1,139 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.NotificationManager;
+import android.content.ComponentName;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.os.Looper;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Application context of the benchmarks. Resources resolve the default
+ * icon as mipmap like a Cordova app or as drawable like an app built with
+ * cordova-android before 6, the launch intent and the notification manager
+ * are available.
+ */
+final class JvmContext extends ContextWrapper {
+
+    // Package name of the app
+    static final String PACKAGE = "io.cordova.hellocordova";
+
+    // Resource IDs by type and name
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    // Resolves the resource IDs
+    private final Resources resources = new Resources() {
+        @Override
+        public int getIdentifier(String name, String defType, String defPackage) {
+            Integer id = ids.get(defType + "/" + name);
+
+            return id != null ? id : 0;
+        }
+    };
+
+    // Resolves the launch intent
+    private final PackageManager packageManager = new PackageManager() {
+        @Override
+        public Intent getLaunchIntentForPackage(String packageName) {
+            return new Intent(Intent.ACTION_MAIN).setPackage(packageName);
+        }
+    };
+
+    // Receives the notification channel
+    private final NotificationManager notificationManager = new NotificationManager();
+
+    JvmContext() {
+        this("mipmap");
+    }
+
+    /**
+     * Initialize the context.
+     *
+     * @param iconType The resource type of the app icons, mipmap or drawable.
+     */
+    JvmContext(String iconType) {
+        super(null);
+
+        ids.put(iconType + "/icon", 0x7f0c0000);
+        ids.put(iconType + "/ic_sync", 0x7f0c0001);
+        ids.put("drawable/screen", 0x7f070000);
+    }
+
+    @Override
+    public JvmContext getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public String getPackageName() {
+        return PACKAGE;
+    }
+
+    @Override
+    public Resources getResources() {
+        return resources;
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return packageManager;
+    }
+
+    @Override
+    public Looper getMainLooper() {
+        return Looper.getMainLooper();
+    }
+
+    @Override
+    public File getFilesDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    @Override
+    public File getNoBackupFilesDir() {
+        return getFilesDir();
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return NOTIFICATION_SERVICE.equals(name) ? notificationManager : null;
+    }
+
+    @Override
+    public String getSystemServiceName(Class<?> serviceClass) {
+        return serviceClass == NotificationManager.class ? NOTIFICATION_SERVICE : null;
+    }
+
+    @Override
+    public ComponentName startService(Intent service) {
+        return null;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.Notification;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the notification of the service. A full render starts from
+ * scratch, the updates change one field at a time so that they take the
+ * partial path of the renderer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationBenchmark {
+
+    // Renders the notification
+    private NotificationRenderer renderer;
+
+    // The configured settings
+    private Settings settings;
+
+    // Settings which differ in the text only
+    private Settings[] texts;
+
+    // Settings which differ in the color only
+    private Settings[] colors;
+
+    // Number of the next update
+    private int step = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        renderer = NotificationRenderer.getInstance(new JvmContext());
+        settings = settings("Syncing", "2196F3");
+        texts    = new Settings[] { settings("Syncing 1", "2196F3"), settings("Syncing 2", "2196F3") };
+        colors   = new Settings[] { settings("Syncing", "4CAF50"), settings("Syncing", "F44336") };
+
+        renderer.render(settings);
+    }
+
+    @Benchmark
+    public Notification render() {
+        renderer.invalidate();
+        return renderer.render(settings);
+    }
+
+    @Benchmark
+    public boolean updateText() {
+        return renderer.update(texts[step++ & 1]);
+    }
+
+    @Benchmark
+    public boolean updateColor() {
+        return renderer.update(colors[step++ & 1]);
+    }
+
+    @Benchmark
+    public boolean updateUnchanged() {
+        return renderer.update(settings);
+    }
+
+    @Benchmark
+    public boolean progress() {
+        return renderer.setProgress(100, step++ % 100, false);
+    }
+
+    /**
+     * Settings as passed by configure.
+     *
+     * @param text  The text of the notification.
+     * @param color The color in hex format.
+     */
+    private static Settings settings(String text, String color) throws Exception {
+        JSONObject json = new JSONObject();
+
+        json.put("title", "App is running in background");
+        json.put("text", text);
+        json.put("icon", "ic_sync");
+        json.put("color", color);
+        json.put("resume", true);
+
+        return Settings.parse(json);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package android.support.v4.app;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * The parts of the support library builder used by the plugin. Like the
+ * support library it keeps the fields and copies them into a new platform
+ * builder with every build.
+ */
+public class NotificationCompat {
+
+    public abstract static class Style {
+
+        abstract Notification.Style build();
+    }
+
+    public static class BigTextStyle extends Style {
+
+        private CharSequence bigText;
+
+        public BigTextStyle bigText(CharSequence cs) {
+            bigText = cs;
+            return this;
+        }
+
+        @Override
+        Notification.Style build() {
+            return new Notification.BigTextStyle().bigText(bigText);
+        }
+    }
+
+    public static class Builder {
+
+        private final Context context;
+        private final String channelId;
+        private CharSequence title;
+        private CharSequence text;
+        private int icon;
+        private int priority;
+        private int color;
+        private int visibility;
+        private boolean showWhen = true;
+        private boolean ongoing;
+        private boolean onlyAlertOnce;
+        private PendingIntent contentIntent;
+        private Style style;
+        private int progressMax;
+        private int progress;
+        private boolean progressIndeterminate;
+
+        public Builder(Context context, String channelId) {
+            this.context   = context;
+            this.channelId = channelId;
+        }
+
+        public Builder setContentTitle(CharSequence title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder setContentText(CharSequence text) {
+            this.text = text;
+            return this;
+        }
+
+        public Builder setSmallIcon(int icon) {
+            this.icon = icon;
+            return this;
+        }
+
+        public Builder setPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder setColor(int argb) {
+            this.color = argb;
+            return this;
+        }
+
+        public Builder setVisibility(int visibility) {
+            this.visibility = visibility;
+            return this;
+        }
+
+        public Builder setShowWhen(boolean show) {
+            this.showWhen = show;
+            return this;
+        }
+
+        public Builder setOngoing(boolean ongoing) {
+            this.ongoing = ongoing;
+            return this;
+        }
+
+        public Builder setOnlyAlertOnce(boolean onlyAlertOnce) {
+            this.onlyAlertOnce = onlyAlertOnce;
+            return this;
+        }
+
+        public Builder setContentIntent(PendingIntent intent) {
+            this.contentIntent = intent;
+            return this;
+        }
+
+        public Builder setStyle(Style style) {
+            this.style = style;
+            return this;
+        }
+
+        public Builder setProgress(int max, int progress, boolean indeterminate) {
+            this.progressMax           = max;
+            this.progress              = progress;
+            this.progressIndeterminate = indeterminate;
+            return this;
+        }
+
+        @SuppressWarnings("deprecation")
+        public Notification build() {
+            Notification.Builder builder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? new Notification.Builder(context, channelId)
+                    : new Notification.Builder(context);
+
+            builder.setContentTitle(title)
+                    .setContentText(text)
+                    .setSmallIcon(icon)
+                    .setPriority(priority)
+                    .setOngoing(ongoing)
+                    .setOnlyAlertOnce(onlyAlertOnce)
+                    .setContentIntent(contentIntent)
+                    .setProgress(progressMax, progress, progressIndeterminate)
+                    .setShowWhen(showWhen);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                builder.setColor(color).setVisibility(visibility);
+            }
+
+            if (style != null) {
+                builder.setStyle(style.build());
+            }
+
+            return builder.build();
+        }
+    }
+
+}
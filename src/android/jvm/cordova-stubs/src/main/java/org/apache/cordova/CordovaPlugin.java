@@ -0,0 +1,75 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package org.apache.cordova;
+
+import android.content.res.Configuration;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+public class CordovaPlugin {
+
+    public CordovaWebView webView;
+    public CordovaInterface cordova;
+    protected CordovaPreferences preferences;
+    private String serviceName;
+
+    public final void privateInitialize(String serviceName, CordovaInterface cordova,
+            CordovaWebView webView, CordovaPreferences preferences) {
+        this.serviceName = serviceName;
+        this.cordova     = cordova;
+        this.webView     = webView;
+        this.preferences = preferences;
+
+        initialize(cordova, webView);
+        pluginInitialize();
+    }
+
+    public void initialize(CordovaInterface cordova, CordovaWebView webView) {}
+
+    protected void pluginInitialize() {}
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext)
+            throws JSONException {
+        return false;
+    }
+
+    public void onPause(boolean multitasking) {}
+
+    public void onResume(boolean multitasking) {}
+
+    public void onStart() {}
+
+    public void onStop() {}
+
+    public void onDestroy() {}
+
+    public void onReset() {}
+
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+}
@@ -0,0 +1,520 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.Activity;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.CordovaWebViewEngine;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static de.appplant.cordova.plugin.background.ForegroundService.NOTIFICATION_ID;
+import static de.appplant.cordova.plugin.background.ForegroundService.WAKE_LOCK_LEASE;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+import static org.robolectric.shadows.ShadowLooper.shadowMainLooper;
+
+/**
+ * Drives the plugin through randomized lifecycle sequences on the fake
+ * clock of the paused main looper. Once the transitions of a burst have
+ * settled, the service has to run and to be bound exactly when the plugin
+ * is enabled, in background and, if required, holding a keep-alive lease.
+ * Neither the foreground notification nor the wake lock lease of the
+ * service may outlive it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class LifecycleSoakTest {
+
+    // Number of random steps, -Psoak.steps=<n> for a longer run
+    private static final int STEPS = Integer.getInteger("soak.steps", 5000);
+
+    // Seed of the run, -Psoak.seed=<n> to replay a failed one
+    private static final long SEED = Long.getLong("soak.seed", 1);
+
+    // Steps between two checks at most
+    private static final int MAX_BURST = 8;
+
+    // Time between two steps of a burst at most
+    private static final int MAX_GAP = 1200;
+
+    // Resolution of the fake clock
+    private static final long TICK = 50;
+
+    // Time for the transitions to settle, longer than the longest lease
+    // timeout, lease grace, start latency and retried stop in a row
+    private static final long SETTLE = 10000;
+
+    // Time to wait for the result of an action
+    private static final long TIMEOUT = 10000;
+
+    // Number of recent steps reported with a violation
+    private static final int HISTORY = 16;
+
+    // Choices of the random settings and leases
+    private static final long[] DEBOUNCES = { 0, 200, 1000 };
+    private static final long[] GRACES    = { 0, 500, 3000 };
+    private static final long[] TIMEOUTS  = { 0, 0, 500, 2000 };
+    private static final String[] LEASES  = { "sync", "upload", "gps" };
+
+    // Picks the steps, the gaps and the start latencies
+    private final Random random = new Random(SEED);
+
+    // Names of the recent steps
+    private final ArrayDeque<String> history = new ArrayDeque<String>();
+
+    // Live leases by name, true if they don't time out
+    private final Map<String, Boolean> leases = new HashMap<String, Boolean>();
+
+    // Plays the system for the service
+    private ServiceHost host;
+
+    // The plugin under test
+    private BackgroundMode plugin;
+
+    // Looper of the shared scheduler thread
+    private Looper scheduler;
+
+    // Expected state of the plugin
+    private boolean enabled      = false;
+    private boolean inBackground = false;
+    private boolean requireLease = false;
+    private boolean destroyed    = false;
+
+    // Number of steps taken and of checks passed
+    private int steps  = 0;
+    private int checks = 0;
+
+    // Sequence of the callback IDs
+    private int callbackId = 0;
+
+    @Before
+    public void setUp() {
+        host = Robolectric.buildActivity(ServiceHost.class).setup().get();
+        host.setRandom(random);
+
+        final CordovaPreferences preferences = new CordovaPreferences();
+
+        CordovaInterface cordova = new CordovaInterface() {
+            @Override
+            public Activity getActivity() {
+                return host;
+            }
+
+            @Override
+            public Context getContext() {
+                return host;
+            }
+
+            @Override
+            public ExecutorService getThreadPool() {
+                return null;
+            }
+        };
+
+        CordovaWebView webView = new CordovaWebView() {
+            @Override
+            public Context getContext() {
+                return host;
+            }
+
+            @Override
+            public android.view.View getView() {
+                return null;
+            }
+
+            @Override
+            public CordovaWebViewEngine getEngine() {
+                return null;
+            }
+
+            @Override
+            public CordovaPreferences getPreferences() {
+                return preferences;
+            }
+
+            @Override
+            public void sendPluginResult(PluginResult result, String callbackId) {}
+        };
+
+        plugin = new BackgroundMode();
+        plugin.privateInitialize("BackgroundMode", cordova, webView, preferences);
+        scheduler = Scheduler.getHandler().getLooper();
+
+        drain();
+    }
+
+    @Test
+    public void soak() throws Exception {
+        long wallStart  = System.nanoTime();
+        long clockStart = SystemClock.uptimeMillis();
+
+        while (steps < STEPS) {
+            int burst = 1 + random.nextInt(MAX_BURST);
+
+            for (int i = 0; i < burst && steps < STEPS; i++) {
+                step();
+                advance(random.nextInt(MAX_GAP));
+            }
+
+            advance(SETTLE);
+            check();
+        }
+
+        record("destroy");
+        plugin.onDestroy();
+        destroyed = true;
+        drain();
+
+        advance(SETTLE);
+        check();
+
+        report(System.nanoTime() - wallStart, SystemClock.uptimeMillis() - clockStart);
+    }
+
+    /**
+     * Take one random step.
+     */
+    private void step() throws JSONException {
+        int dice = random.nextInt(100);
+
+        steps++;
+
+        if (dice < 25) {
+            toggleBackground();
+        } else if (dice < 40) {
+            toggleMode();
+        } else if (dice < 60) {
+            acquire(LEASES[random.nextInt(LEASES.length)],
+                    TIMEOUTS[random.nextInt(TIMEOUTS.length)]);
+        } else if (dice < 72) {
+            release(LEASES[random.nextInt(LEASES.length)]);
+        } else if (dice < 82 && !inBackground) {
+            configure(random.nextBoolean(), DEBOUNCES[random.nextInt(DEBOUNCES.length)],
+                    GRACES[random.nextInt(GRACES.length)]);
+        } else if (dice < 92) {
+            record("update");
+            exec("configure", new JSONArray()
+                    .put(new JSONObject().put("text", "Step " + steps))
+                    .put(true));
+        } else {
+            record("progress");
+            exec("progress", new JSONArray().put(100).put(random.nextInt(101)).put(false));
+        }
+    }
+
+    /**
+     * Send the app to background or bring it back to foreground.
+     */
+    private void toggleBackground() {
+        inBackground = !inBackground;
+
+        if (inBackground) {
+            record("pause");
+            plugin.onPause(false);
+        } else {
+            record("resume");
+            plugin.onResume(false);
+        }
+
+        drain();
+    }
+
+    /**
+     * Enable or disable the background mode.
+     */
+    private void toggleMode() {
+        enabled = !enabled;
+
+        record(enabled ? "enable" : "disable");
+        exec(enabled ? "enable" : "disable", new JSONArray());
+    }
+
+    /**
+     * Open or renew the named lease.
+     *
+     * @param name    The name of the lease.
+     * @param timeout Time after the lease expires or 0.
+     */
+    private void acquire(String name, long timeout) {
+        record("keepalive " + name + " " + timeout);
+        exec("keepalive", new JSONArray().put(name).put(timeout));
+        leases.put(name, timeout == 0);
+    }
+
+    /**
+     * Close the named lease.
+     *
+     * @param name The name of the lease.
+     */
+    private void release(String name) {
+        record("letgo " + name);
+        exec("letgo", new JSONArray().put(name));
+        leases.remove(name);
+    }
+
+    /**
+     * Change the settings of the lifecycle. Only done in foreground, as
+     * the plugin applies them with the next transition.
+     *
+     * @param lease    If the service runs only while a lease is live.
+     * @param debounce Time in background before the service starts.
+     * @param grace    Time the service runs after the last lease.
+     */
+    private void configure(boolean lease, long debounce, long grace) throws JSONException {
+        JSONObject settings = new JSONObject()
+                .put("requireLease", lease)
+                .put("debounce", debounce)
+                .put("leaseGrace", grace);
+
+        requireLease = lease;
+
+        record("configure " + settings);
+        exec("configure", new JSONArray().put(settings).put(false));
+    }
+
+    /**
+     * Call the action like the web view does and wait for its result.
+     *
+     * @param action The name of the action.
+     * @param args   The arguments of the action.
+     */
+    private void exec(String action, JSONArray args) {
+        Callback callback = new Callback();
+        long deadline     = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+
+        if (!plugin.execute(action, args, callback)) {
+            violation("unknown action " + action);
+        }
+
+        while (callback.result == null) {
+            if (System.nanoTime() > deadline) {
+                violation(action + " did not finish");
+            }
+
+            shadowMainLooper().idle();
+            callback.await();
+        }
+
+        if (callback.result.getStatus() != PluginResult.Status.OK.ordinal()) {
+            violation(action + " failed with " + callback.result.getMessage());
+        }
+
+        drain();
+    }
+
+    /**
+     * Let the fake clock pass in ticks, running the due tasks of the main
+     * looper and of the scheduler.
+     *
+     * @param millis The time to pass.
+     */
+    private void advance(long millis) {
+        for (long passed = 0; passed < millis; passed += TICK) {
+            shadowMainLooper().idleFor(Math.min(TICK, millis - passed), TimeUnit.MILLISECONDS);
+            drain();
+        }
+    }
+
+    /**
+     * Run the due tasks of the scheduler and of the main looper until both
+     * are idle, as each may post to the other.
+     */
+    private void drain() {
+        do {
+            shadowOf(scheduler).idle();
+            shadowMainLooper().idle();
+        } while (!shadowOf(scheduler).isIdle() || !shadowMainLooper().isIdle());
+    }
+
+    /**
+     * Verify the invariants of the settled lifecycle.
+     */
+    private void check() {
+        boolean expected = !destroyed && enabled && inBackground
+                && (!requireLease || leases.containsValue(true));
+
+        NotificationManager manager = (NotificationManager)
+                host.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        boolean notified = shadowOf(manager).getNotification(NOTIFICATION_ID) != null;
+        boolean awake    = WakeLockManager.getInstance(host).isLive(WAKE_LOCK_LEASE);
+
+        verify("service bound", host.isBound(), expected);
+        verify("service running", host.isRunning(), expected);
+        verify("service in foreground", ForegroundService.started, expected);
+        verify("notification posted", notified, expected);
+
+        if (!expected && awake) {
+            violation("wake lock lease outlives the service");
+        }
+
+        if (!host.violations.isEmpty()) {
+            violation(host.violations.toString());
+        }
+
+        checks++;
+    }
+
+    /**
+     * Fail if the state differs from the expected one.
+     *
+     * @param what     The name of the state.
+     * @param actual   The actual state.
+     * @param expected The expected state.
+     */
+    private void verify(String what, boolean actual, boolean expected) {
+        if (actual != expected) {
+            violation(what + " is " + actual + ", expected " + expected);
+        }
+    }
+
+    /**
+     * Fail with the seed and the recent steps needed to replay the run.
+     *
+     * @param message The description of the violation.
+     */
+    private void violation(String message) {
+        fail(String.format("Seed %d, step %d: %s%nRecent steps: %s",
+                SEED, steps, message, history));
+    }
+
+    /**
+     * Remember the step for the report of a violation.
+     *
+     * @param name The description of the step.
+     */
+    private void record(String name) {
+        if (history.size() == HISTORY) {
+            history.removeFirst();
+        }
+
+        history.addLast(name);
+    }
+
+    /**
+     * Print the throughput and the service churn of the run and write them
+     * to the report file.
+     *
+     * @param wallNanos   The time the run took.
+     * @param clockMillis The time passed on the fake clock.
+     */
+    private void report(long wallNanos, long clockMillis) throws JSONException, IOException {
+        JSONObject metrics = Metrics.toJSON();
+        JSONObject report  = new JSONObject();
+        double seconds     = wallNanos / 1e9;
+
+        report.put("seed", SEED);
+        report.put("steps", steps);
+        report.put("checks", checks);
+        report.put("wallMillis", wallNanos / 1000000);
+        report.put("clockMillis", clockMillis);
+        report.put("stepsPerSecond", Math.round(steps / seconds));
+        report.put("serviceCreates", host.creates);
+        report.put("serviceDestroys", host.destroys);
+
+        for (String name : new String[] { "serviceStarts", "serviceStops", "stopRetries",
+                "debouncedTransitions", "idleStops" }) {
+            report.put(name, metrics.opt(name));
+        }
+
+        System.out.println("Soak " + report);
+
+        String path = System.getProperty("soak.report");
+
+        if (path == null)
+            return;
+
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(report.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Callback of one exec() call which keeps the result.
+     */
+    private final class Callback extends CallbackContext {
+
+        // Counted down with the result
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // The result or null
+        volatile PluginResult result;
+
+        Callback() {
+            super("BackgroundMode" + callbackId++, null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        /**
+         * Wait a moment for the result.
+         */
+        void await() {
+            try {
+                done.await(1, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+    Copyright 2013-2017 appPlant GmbH
+
+    Licensed to the Apache Software Foundation (ASF) under one
+    or more contributor license agreements.  See the NOTICE file
+    distributed with this work for additional information
+    regarding copyright ownership.  The ASF licenses this file
+    to you under the Apache License, Version 2.0 (the
+    "License"); you may not use this file except in compliance
+    with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on an
+    "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied.  See the License for the
+    specific language governing permissions and limitations
+    under the License.
+ */
+
+
+package de.appplant.cordova.plugin.background;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ServiceController;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Activity of the soak test, which plays the part of the system for the
+ * foreground service. Binding creates the service, the start command
+ * arrives after a random latency and the service gets destroyed once it's
+ * stopped and unbound. Robolectric's own bookkeeping counts the bindings
+ * of a connection, while the system keeps one per connection.
+ */
+public class ServiceHost extends Activity {
+
+    // Upper bound of the time the system takes to deliver the start
+    // command, the deadline of startForeground and thus several times the
+    // delay the plugin waits before it retries a stop
+    static final int MAX_START_LATENCY = 5000;
+
+    // Delivers the callbacks like the system does on the main thread
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Connections bound to the service
+    private final Set<ServiceConnection> connections = new HashSet<ServiceConnection>();
+
+    // Start commands not yet delivered
+    private final List<Runnable> pendingStarts = new ArrayList<Runnable>();
+
+    // Misuse of the service API the system would punish
+    final List<String> violations = new ArrayList<String>();
+
+    // Picks the start latencies
+    private Random random = new Random(0);
+
+    // The created service or null
+    private ServiceController<ForegroundService> service;
+
+    // Flag indicates if the service has been started and not stopped since
+    private boolean started = false;
+
+    // ID of the last start command
+    private int startId = 0;
+
+    // Number of created and destroyed services
+    int creates  = 0;
+    int destroys = 0;
+
+    /**
+     * Set the source of the start latencies.
+     *
+     * @param random The random of the soak run.
+     */
+    void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * If any connection is bound to the service.
+     */
+    boolean isBound() {
+        return !connections.isEmpty();
+    }
+
+    /**
+     * If the service has been created and not yet destroyed.
+     */
+    boolean isRunning() {
+        return service != null;
+    }
+
+    @Override
+    public boolean bindService(Intent intent, final ServiceConnection conn, int flags) {
+        final IBinder binder = create(intent).onBind(intent);
+
+        connections.add(conn);
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (connections.contains(conn)) {
+                    conn.onServiceConnected(getComponent(), binder);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    @Override
+    public void unbindService(ServiceConnection conn) {
+        if (!connections.remove(conn))
+            throw new IllegalArgumentException("Service not registered: " + conn);
+
+        destroyIfUnused();
+    }
+
+    @Override
+    public ComponentName startForegroundService(Intent intent) {
+        create(intent);
+        started = true;
+
+        Runnable command = new Runnable() {
+            @Override
+            public void run() {
+                pendingStarts.remove(this);
+                service.startCommand(0, ++startId);
+            }
+        };
+
+        pendingStarts.add(command);
+        handler.postDelayed(command, random.nextInt(MAX_START_LATENCY));
+
+        return getComponent();
+    }
+
+    @Override
+    public boolean stopService(Intent intent) {
+        if (service == null)
+            return false;
+
+        if (!pendingStarts.isEmpty()) {
+            violations.add("service stopped before it called startForeground");
+        }
+
+        started = false;
+        destroyIfUnused();
+
+        return true;
+    }
+
+    /**
+     * Create the service unless it runs already.
+     *
+     * @param intent The intent of the service.
+     */
+    private ForegroundService create(Intent intent) {
+        if (service == null) {
+            service = Robolectric.buildService(ForegroundService.class, intent).create();
+            creates++;
+        }
+
+        return service.get();
+    }
+
+    /**
+     * Destroy the service once it's stopped and unbound.
+     */
+    private void destroyIfUnused() {
+        if (service == null || started || !connections.isEmpty())
+            return;
+
+        for (Runnable command : pendingStarts) {
+            handler.removeCallbacks(command);
+        }
+
+        pendingStarts.clear();
+        service.destroy();
+        service = null;
+        destroys++;
+    }
+
+    /**
+     * The component name of the service.
+     */
+    private ComponentName getComponent() {
+        return new ComponentName(this, ForegroundService.class);
+    }
+
+}
@@ -150,14 +150,55 @@ exports.configure = function (options) {
     cordova.exec(null, null, 'BackgroundMode', 'configure', [options, true]);
 };
 
+/**
+ * Show a progress bar within the notification (Android only). Only the
+ * progress gets updated, the other fields are not rendered again.
+ *
+ * @param [ Number ] progress The current value.
+ * @param [ Number ] max Optional max value, 100 by default.
+ * @param [ Boolean ] indeterminate Optional flag if the progress is unknown.
+ *
+ * @return [ Void ]
+ */
+exports.setProgress = function (progress, max, indeterminate) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'progress', [max || 100, progress || 0, !!indeterminate]);
+    }
+};
+
+/**
+ * Remove the progress bar from the notification (Android only).
+ *
+ * @return [ Void ]
+ */
+exports.clearProgress = function () {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'progress', [0, 0, false]);
+    }
+};
+
 /**
  * Enable GPS-tracking in background (Android).
  *
+ * @param [ Number ] cadence Optional interval in ms to keep the
+ *                           web view timers running in background.
+ *
  * @return [ Void ]
  */
-exports.disableWebViewOptimizations = function() {
+exports.disableWebViewOptimizations = function (cadence) {
     if (this._isAndroid) {
-        cordova.exec(null, null, 'BackgroundMode', 'optimizations', []);
+        cordova.exec(null, null, 'BackgroundMode', 'optimizations', [cadence || 0]);
+    }
+};
+
+/**
+ * Turn the web view optimizations on again (Android).
+ *
+ * @return [ Void ]
+ */
+exports.enableWebViewOptimizations = function() {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'throttle', []);
     }
 };
 
@@ -221,6 +262,22 @@ exports.isScreenOff = function (fn) {
     }
 };
 
+/**
+ * If the screen is on, the device interactive and the user present
+ * (Android only). Changes are fired as the screen event.
+ *
+ * @param [ Function ] fn Callback function to invoke with the state.
+ *
+ * @return [ Void ]
+ */
+exports.getScreenState = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'screen', []);
+    } else {
+        fn({});
+    }
+};
+
 /**
  * Wake up the device.
  *
@@ -243,6 +300,395 @@ exports.unlock = function() {
     }
 };
 
+/**
+ * Keep the CPU awake until the named lease gets released or expires
+ * (Android only). The wake lock is held as long as one lease is live.
+ *
+ * @param [ String ] name The name of the lease.
+ * @param [ Number ] timeout Optional time in ms after the lease expires.
+ *
+ * @return [ Void ]
+ */
+exports.acquireWakeLock = function (name, timeout) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'acquire', [name, timeout || 0]);
+    }
+};
+
+/**
+ * Release the named lease (Android only).
+ *
+ * @param [ String ] name The name of the lease.
+ *
+ * @return [ Void ]
+ */
+exports.releaseWakeLock = function (name) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'release', [name]);
+    }
+};
+
+/**
+ * Hold the wake lock only for a part of each period while
+ * leases are live (Android only).
+ *
+ * @param [ Number ] awake Time in ms awake per period, 0 to disable.
+ * @param [ Number ] period Length of the period in ms.
+ *
+ * @return [ Void ]
+ */
+exports.setWakeLockDutyCycle = function (awake, period) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'dutycycle', [awake || 0, period || 0]);
+    }
+};
+
+/**
+ * Time the wake lock has been held per lease (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getWakeLockStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'wakelocks', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * Open the named keep-alive lease (Android only). With requireLease
+ * set in the defaults the service runs in background only while a
+ * lease is open.
+ *
+ * @param [ String ] name The name of the lease.
+ * @param [ Number ] timeout Optional time in ms after the lease expires.
+ *
+ * @return [ Void ]
+ */
+exports.acquireKeepAlive = function (name, timeout) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'keepalive', [name, timeout || 0]);
+    }
+};
+
+/**
+ * Close the named keep-alive lease (Android only). The service stops
+ * after the grace period once the last lease has been closed.
+ *
+ * @param [ String ] name The name of the lease.
+ *
+ * @return [ Void ]
+ */
+exports.releaseKeepAlive = function (name) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'letgo', [name]);
+    }
+};
+
+/**
+ * Lifetimes of the keep-alive leases (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getKeepAliveStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'keepalives', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * Fire the 'tick' event periodically while the app runs in
+ * background (Android only). All subscriptions share one native
+ * timer and due subscriptions get delivered together.
+ *
+ * @param [ String ] name The name of the subscription.
+ * @param [ Number ] interval The interval in ms.
+ * @param [ Number ] screenOffInterval Optional interval in ms while
+ *                                     the screen is off.
+ *
+ * @return [ Void ]
+ */
+exports.subscribeTick = function (name, interval, screenOffInterval) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'subscribe', [name, interval, screenOffInterval || 0]);
+    }
+};
+
+/**
+ * Remove the named tick subscription (Android only).
+ *
+ * @param [ String ] name The name of the subscription.
+ *
+ * @return [ Void ]
+ */
+exports.unsubscribeTick = function (name) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'unsubscribe', [name]);
+    }
+};
+
+/**
+ * Delivered ticks, missed ticks and jitter per subscription (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getTickStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'ticks', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * Set the memory pressure levels from which on the web view caches
+ * get released and rendering gets paused while in background
+ * (Android only). Levels are running_moderate, running_low,
+ * running_critical, ui_hidden, background, moderate and complete.
+ *
+ * @param [ Object ] options Dict with the clearCache and
+ *                           pauseRendering levels.
+ *
+ * @return [ Void ]
+ */
+exports.configureMemory = function (options) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'memory', [options || {}]);
+    }
+};
+
+/**
+ * The latest memory pressure levels with the heap and PSS before
+ * and after (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the records.
+ *
+ * @return [ Void ]
+ */
+exports.getMemoryStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'memorystats', []);
+    } else {
+        fn([]);
+    }
+};
+
+/**
+ * Configure the native sample buffer (Android only). Samples are
+ * kept in a memory-mapped file and survive the app being killed.
+ *
+ * @param [ Number ] capacity Size of the buffer in bytes, 0 to keep it.
+ * @param [ String ] policy 'overwrite' drops the oldest samples if the
+ *                          buffer is full, 'reject' the new ones.
+ * @param [ Function ] fn Optional callback to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.configureSamples = function (capacity, policy, fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'samples', [capacity || 0, policy || 'overwrite']);
+    }
+};
+
+/**
+ * Append a batch of samples to the native buffer with a single
+ * bridge call (Android only).
+ *
+ * @param [ Array ] samples List of ArrayBuffers or typed arrays.
+ * @param [ Function ] fn Optional callback to invoke with the
+ *                        number of appended samples.
+ *
+ * @return [ Void ]
+ */
+exports.appendSamples = function (samples, fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'append', [this._packSamples(samples)]);
+    }
+};
+
+/**
+ * Remove all samples from the native buffer (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the
+ *                        list of ArrayBuffers, oldest first.
+ *
+ * @return [ Void ]
+ */
+exports.drainSamples = function (fn) {
+    var me = this;
+
+    if (this._isAndroid) {
+        cordova.exec(function (buffer) {
+            fn(me._unpackSamples(buffer));
+        }, null, 'BackgroundMode', 'drain', []);
+    } else {
+        fn([]);
+    }
+};
+
+/**
+ * Fill level of the native sample buffer and the number of
+ * dropped and rejected samples (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getSampleStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'samplestats', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * The current power tier, its inputs and the latest decisions of the
+ * power policy (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the state.
+ *
+ * @return [ Void ]
+ */
+exports.getPowerState = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'power', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * The running keep-alive strategy and how many starts, failures and
+ * wakeups each strategy had (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getKeepAliveStrategy = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'strategy', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * The recorded lifecycle and command events as Chrome trace-event JSON
+ * (Android only).
+ *
+ * @param [ Function ] fn     Callback function to invoke with the trace.
+ * @param [ Number ]   window Only events of the last ms, all by default.
+ *
+ * @return [ Void ]
+ */
+exports.exportTrace = function (fn, window) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'trace', [window || 0]);
+    } else {
+        fn({ traceEvents: [] });
+    }
+};
+
+/**
+ * Time the messages of the main thread and warn about the ones taking
+ * longer than the threshold (Android only).
+ *
+ * @param [ Number ] threshold Time in ms, 100 by default.
+ *
+ * @return [ Void ]
+ */
+exports.startWatchdog = function (threshold) {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'watchdog', [true, threshold || 0]);
+    }
+};
+
+/**
+ * Stop timing the messages of the main thread (Android only).
+ *
+ * @return [ Void ]
+ */
+exports.stopWatchdog = function () {
+    if (this._isAndroid) {
+        cordova.exec(null, null, 'BackgroundMode', 'watchdog', [false]);
+    }
+};
+
+/**
+ * The stalls of the main thread, the time to startForeground and the
+ * latest warnings (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ *
+ * @return [ Void ]
+ */
+exports.getWatchdogStats = function (fn) {
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'watchdogstats', []);
+    } else {
+        fn({});
+    }
+};
+
+/**
+ * Run several native actions in order with a single bridge call (Android
+ * only). Each command is a list of the action name and its arguments, like
+ * ['enable', []]. The result of each command is either { ok: true, result }
+ * or { ok: false, error }.
+ *
+ * @param [ Array ]    commands List of [action, args] pairs.
+ * @param [ Function ] fn       Optional callback function to invoke with
+ *                              the results in order.
+ *
+ * @return [ Void ]
+ */
+exports.batch = function (commands, fn) {
+    var cb = function (results) {
+            exports._onBatchResults(commands, results);
+
+            if (fn) {
+                fn(results);
+            }
+        };
+
+    if (this._isAndroid) {
+        cordova.exec(cb, null, 'BackgroundMode', 'batch', [commands]);
+    } else if (fn) {
+        fn([]);
+    }
+};
+
+/**
+ * Runtime metrics like service starts, latencies and time
+ * spent in background (Android only).
+ *
+ * @param [ Function ] fn Callback function to invoke with the stats.
+ * @param [ Number ] interval Optional interval in ms to fire the
+ *                            'stats' event periodically, 0 to stop.
+ *
+ * @return [ Void ]
+ */
+exports.getStats = function (fn, interval) {
+    var args = interval === undefined ? [] : [interval];
+
+    if (this._isAndroid) {
+        cordova.exec(fn, null, 'BackgroundMode', 'getStats', args);
+    } else if (fn) {
+        fn({});
+    }
+};
+
 /**
  * If the mode is enabled or disabled.
  *
@@ -394,7 +840,11 @@ exports._defaults = {
     silent:  false,
     hidden:  true,
     color:   undefined,
-    icon:    'icon'
+    icon:    'icon',
+    keepAwake: true,
+    debounce:  500,
+    requireLease: false,
+    leaseGrace:   5000
 };
 
 /**
@@ -436,6 +886,143 @@ exports._setActive = function(value) {
     this._settings = value ? this._mergeObjects({}, this._defaults) : {};
 };
 
+/**
+ * @private
+ *
+ * Events which change the isActive flag.
+ */
+exports._lifecycleEvents = {
+    activate:   true,
+    deactivate: true,
+    failure:    true
+};
+
+/**
+ * @private
+ *
+ * Invoked by the native side with a batch of events
+ * through the kept-alive callback.
+ *
+ * @param [ Array<Object> ] events List of { event, data } items.
+ *
+ * @return [ Void ]
+ */
+exports._onNativeEvents = function (events) {
+    for (var i = 0; i < events.length; i++) {
+        var event = events[i].event,
+            data  = events[i].data;
+
+        if (this._lifecycleEvents[event]) {
+            this._setActive(event == 'activate');
+            this['on' + event](data);
+        }
+
+        this.fireEvent(event, data);
+    }
+};
+
+/**
+ * @private
+ *
+ * Concatenate the samples, each prefixed by its length.
+ *
+ * @param [ Array ] samples List of ArrayBuffers or typed arrays.
+ *
+ * @return [ ArrayBuffer ]
+ */
+exports._packSamples = function (samples) {
+    var size = 0, offset = 0, buffer, view, bytes, data, i;
+
+    for (i = 0; i < samples.length; i++) {
+        size += 4 + samples[i].byteLength;
+    }
+
+    buffer = new ArrayBuffer(size);
+    view   = new DataView(buffer);
+    bytes  = new Uint8Array(buffer);
+
+    for (i = 0; i < samples.length; i++) {
+        data = samples[i] instanceof ArrayBuffer ? new Uint8Array(samples[i]) :
+               new Uint8Array(samples[i].buffer, samples[i].byteOffset, samples[i].byteLength);
+
+        view.setUint32(offset, data.length);
+        bytes.set(data, offset + 4);
+        offset += 4 + data.length;
+    }
+
+    return buffer;
+};
+
+/**
+ * @private
+ *
+ * Split the drained buffer into the samples.
+ *
+ * @param [ ArrayBuffer ] buffer The length prefixed samples.
+ *
+ * @return [ Array ]
+ */
+exports._unpackSamples = function (buffer) {
+    var samples = [], offset = 0, view, size;
+
+    if (!buffer)
+        return samples;
+
+    view = new DataView(buffer);
+
+    while (offset + 4 <= buffer.byteLength) {
+        size = view.getUint32(offset);
+        samples.push(buffer.slice(offset + 4, offset + 4 + size));
+        offset += 4 + size;
+    }
+
+    return samples;
+};
+
+/**
+ * @private
+ *
+ * Keep the state in sync with the batched enable and disable commands.
+ *
+ * @param [ Array ] commands The batched commands.
+ * @param [ Array ] results  Their results in order.
+ *
+ * @return [ Void ]
+ */
+exports._onBatchResults = function (commands, results) {
+    var action, i;
+
+    for (i = 0; i < results.length; i++) {
+        action = commands[i][0];
+
+        if (!results[i].ok)
+            continue;
+
+        if (action == 'enable' && !this.isEnabled()) {
+            this._isEnabled = true;
+            this.fireEvent('enable');
+        } else if (action == 'disable' && this.isEnabled()) {
+            this._isEnabled = false;
+            this.fireEvent('disable');
+        }
+    }
+};
+
+/**
+ * @private
+ *
+ * Register the kept-alive callback to receive native events.
+ *
+ * @return [ Void ]
+ */
+exports._listen = function () {
+    var fn = function (events) {
+            exports._onNativeEvents(events);
+        };
+
+    cordova.exec(fn, null, 'BackgroundMode', 'listen', []);
+};
+
 /**
  * @private
  *
@@ -450,6 +1037,10 @@ exports._pluginInitialize = function() {
     this._isAndroid = device.platform.match(/^android|amazon/i) !== null;
     this.setDefaults({});
 
+    if (this._isAndroid) {
+        this._listen();
+    }
+
     if (device.platform == 'browser') {
         this.enable();
         this._isEnabled = true;